@@ -0,0 +1,394 @@
+package hudson.model;
+
+import hudson.Extension;
+import hudson.Functions;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Summaries of the last finished builds of a job: number, result, start time,
+ * duration and test counts, kept in a ring buffer of
+ * <code>hudson.model.BuildHistory.size</code> builds (8 by default). The
+ * buffer is filled from the job's builds the first time it is needed, then
+ * kept up to date as builds finish, so most of what the radiator shows no
+ * longer needs loading builds.
+ * <p>
+ * Lookups return null when the answer is older than the buffered builds, in
+ * which case the builds have to be looked at.
+ */
+final class BuildHistory {
+
+	static final int SIZE = Math.max(2, Integer.getInteger(BuildHistory.class.getName() + ".size", 8));
+
+	private static final ConcurrentMap<String, BuildHistory> HISTORIES = new ConcurrentHashMap<String, BuildHistory>();
+
+	/**
+	 * Results by ordinal.
+	 */
+	private static final Result[] RESULTS = { Result.SUCCESS, Result.UNSTABLE, Result.FAILURE,
+			Result.NOT_BUILT, Result.ABORTED };
+
+	private final Job<?, ?> job;
+
+	private final int[] numbers = new int[SIZE];
+
+	private final byte[] results = new byte[SIZE];
+
+	private final long[] timestamps = new long[SIZE];
+
+	private final long[] durations = new long[SIZE];
+
+	/**
+	 * Total and failed test counts, -1 if the build has no test results.
+	 */
+	private final int[] tests = new int[SIZE];
+
+	private final int[] failures = new int[SIZE];
+
+	/**
+	 * Index the next build is written at, and number of builds buffered.
+	 */
+	private int head;
+
+	private int count;
+
+	/**
+	 * Whether the job has finished builds older than the buffered ones.
+	 */
+	private boolean truncated;
+
+	private boolean seeded;
+
+	/**
+	 * Estimated duration of the next build, computed again when a build is
+	 * added.
+	 */
+	private long estimatedDuration = -2;
+
+	private BuildHistory(Job<?, ?> job) {
+		this.job = job;
+	}
+
+	/**
+	 * @return the history of the job, created if needed.
+	 */
+	static BuildHistory of(Job<?, ?> job) {
+		String name = job.getFullName();
+		BuildHistory history = HISTORIES.get(name);
+		if (history == null || history.job != job) {
+			// it is only filled once used, so losing a race costs nothing.
+			history = new BuildHistory(job);
+			HISTORIES.put(name, history);
+		}
+		return history;
+	}
+
+	/**
+	 * Fills the buffer from the job's latest finished builds.
+	 */
+	private void seed() {
+		if (seeded) {
+			return;
+		}
+		seeded = true;
+		Run<?, ?> run = RenderStats.run(job.getLastBuild());
+		Run<?, ?>[] finished = new Run<?, ?>[SIZE];
+		int found = 0;
+		while (run != null && found < SIZE) {
+			if (isFinished(run)) {
+				finished[found++] = run;
+			}
+			run = RenderStats.run(run.getPreviousBuild());
+		}
+		truncated = run != null;
+		for (int i = found - 1; i >= 0; i--) {
+			add(finished[i]);
+		}
+	}
+
+	/**
+	 * Fills the buffer now rather than when it is first needed.
+	 */
+	synchronized void preload() {
+		seed();
+	}
+
+	private static boolean isFinished(Run<?, ?> run) {
+		return !run.hasntStartedYet() && !run.isBuilding() && !run.isLogUpdated() && run.getResult() != null;
+	}
+
+	private void add(Run<?, ?> run) {
+		numbers[head] = run.getNumber();
+		results[head] = (byte) run.getResult().ordinal;
+		timestamps[head] = run.getTimeInMillis();
+		durations[head] = run.getDuration();
+		AbstractTestResultAction<?> action = RenderStats.testResults(run);
+		tests[head] = action != null ? action.getTotalCount() : -1;
+		failures[head] = action != null ? action.getFailCount() : -1;
+		if (count == SIZE) {
+			truncated = true;
+		} else {
+			count++;
+		}
+		head = (head + 1) % SIZE;
+		estimatedDuration = -2;
+	}
+
+	/**
+	 * Adds a build which just finished.
+	 *
+	 * @return false if the build finished out of order, and the history
+	 *         must be read again from the builds.
+	 */
+	private synchronized boolean record(Run<?, ?> run) {
+		if (!seeded) {
+			// the build will be found when seeding.
+			return true;
+		}
+		if (count > 0 && run.getNumber() <= numbers[index(0)]) {
+			return run.getNumber() == numbers[index(0)];
+		}
+		add(run);
+		return true;
+	}
+
+	/**
+	 * @return the position in the arrays of the i-th most recent build.
+	 */
+	private int index(int i) {
+		return (head - 1 - i + SIZE) % SIZE;
+	}
+
+	private Result result(int i) {
+		return RESULTS[results[index(i)]];
+	}
+
+	/**
+	 * @return the result of the last finished build which wasn't aborted,
+	 *         {@link Result#NOT_BUILT} if there is none, as
+	 *         {@link RadiatorUtil#getLastFinishedResult(Job)}.
+	 */
+	synchronized Result getLastFinishedResult() {
+		seed();
+		for (int i = 0; i < count; i++) {
+			if (result(i) != Result.ABORTED) {
+				return result(i);
+			}
+		}
+		return truncated ? null : Result.NOT_BUILT;
+	}
+
+	/**
+	 * @return start time and duration of the last stable build, an empty
+	 *         array if there is none.
+	 */
+	synchronized long[] getLastStableBuild() {
+		seed();
+		for (int i = 0; i < count; i++) {
+			if (result(i) == Result.SUCCESS) {
+				return timing(i);
+			}
+		}
+		return truncated ? null : new long[0];
+	}
+
+	/**
+	 * @return start time and duration of the last completed build, an empty
+	 *         array if there is none.
+	 */
+	synchronized long[] getLastCompletedBuild() {
+		seed();
+		if (count > 0) {
+			return timing(0);
+		}
+		return truncated ? null : new long[0];
+	}
+
+	private long[] timing(int i) {
+		return new long[] { timestamps[index(i)], durations[index(i)] };
+	}
+
+	/**
+	 * @return the position of the n-th last successful build, -1 if there is
+	 *         none, or -2 if it is older than the buffered builds.
+	 */
+	private int successful(int n) {
+		for (int i = 0; i < count; i++) {
+			if (result(i).isBetterOrEqualTo(Result.UNSTABLE) && n-- == 0) {
+				return i;
+			}
+		}
+		return truncated ? -2 : -1;
+	}
+
+	/**
+	 * @return total and failed test counts of the last successful build.
+	 */
+	synchronized int[] getTests() {
+		seed();
+		int last = successful(0);
+		if (last == -2) {
+			return null;
+		}
+		if (last == -1 || tests[index(last)] < 0) {
+			return new int[2];
+		}
+		return new int[] { tests[index(last)], failures[index(last)] };
+	}
+
+	/**
+	 * @return the change in passing tests between the last two successful
+	 *         builds, formatted as {@link JobViewEntry#getDiff()}.
+	 */
+	synchronized String getDiff() {
+		seed();
+		int last = successful(0);
+		if (last == -2) {
+			return null;
+		}
+		int previous = last == -1 ? -1 : successful(1);
+		if (previous == -2) {
+			return null;
+		}
+		if (previous == -1 || tests[index(last)] < 0 || tests[index(previous)] < 0) {
+			return "";
+		}
+		int diff = (tests[index(last)] - failures[index(last)])
+				- (tests[index(previous)] - failures[index(previous)]);
+		return diff != 0 ? Functions.getDiffString(diff) : "";
+	}
+
+	/**
+	 * @return the average duration of the last three successful builds, as
+	 *         {@link Job#getEstimatedDuration()}, completed with failed ones
+	 *         if there are not enough, or -1 if there is none.
+	 */
+	synchronized long getEstimatedDuration() {
+		seed();
+		if (estimatedDuration == -2) {
+			long total = 0;
+			int builds = 0;
+			for (int i = 0; i < count && builds < 3; i++) {
+				if (result(i).isBetterOrEqualTo(Result.UNSTABLE)) {
+					total += durations[index(i)];
+					builds++;
+				}
+			}
+			for (int i = 0; i < count && builds < 3; i++) {
+				if (result(i) == Result.FAILURE) {
+					total += durations[index(i)];
+					builds++;
+				}
+			}
+			estimatedDuration = builds == 0 || total == 0 ? -1 : Math.round((double) total / builds);
+		}
+		return estimatedDuration;
+	}
+
+	/**
+	 * @return "improving" or "worsening" if the last finished build got a
+	 *         better or worse result than the one before, or failed fewer or
+	 *         more tests, and "steady" otherwise.
+	 */
+	synchronized String getTrend() {
+		seed();
+		int last = -1;
+		int previous = -1;
+		for (int i = 0; i < count && previous < 0; i++) {
+			if (result(i) == Result.ABORTED) {
+				continue;
+			}
+			if (last < 0) {
+				last = i;
+			} else {
+				previous = i;
+			}
+		}
+		if (previous < 0) {
+			return "steady";
+		}
+		int compare = result(last).ordinal - result(previous).ordinal;
+		if (compare == 0 && failures[index(last)] >= 0 && failures[index(previous)] >= 0) {
+			compare = failures[index(last)] - failures[index(previous)];
+		}
+		return compare < 0 ? "improving" : (compare > 0 ? "worsening" : "steady");
+	}
+
+	/**
+	 * @return number, result ordinal, start time and duration of each
+	 *         buffered build, oldest first.
+	 */
+	synchronized long[][] getBuilds() {
+		seed();
+		long[][] builds = new long[count][];
+		for (int i = 0; i < count; i++) {
+			int index = index(count - 1 - i);
+			builds[i] = new long[] { numbers[index], results[index], timestamps[index], durations[index] };
+		}
+		return builds;
+	}
+
+	/**
+	 * @return <code>true</code> if the given build is within the range of the
+	 *         buffered builds, which are then no longer the latest ones.
+	 */
+	private synchronized boolean covers(int number) {
+		return seeded && count > 0 && number >= numbers[index(count - 1)] && number <= numbers[index(0)];
+	}
+
+	static void invalidate(String fullName) {
+		HISTORIES.remove(fullName);
+	}
+
+	/**
+	 * Adds finished builds to the history of their job.
+	 */
+	@Extension
+	public static final class RunListenerImpl extends RunListener<Run> {
+
+		@Override
+		public void onFinalized(Run run) {
+			Job<?, ?> job = run.getParent();
+			BuildHistory history = HISTORIES.get(job.getFullName());
+			if (history != null && !history.record(run)) {
+				invalidate(job.getFullName());
+			}
+			// states read before the build was added must not be kept.
+			JobStatusRegistry.invalidate(job);
+		}
+
+		/**
+		 * Only drops the history if the build was buffered: log rotation
+		 * deletes old builds after every build on most jobs.
+		 */
+		@Override
+		public void onDeleted(Run run) {
+			String name = run.getParent().getFullName();
+			BuildHistory history = HISTORIES.get(name);
+			if (history != null && history.covers(run.getNumber())) {
+				invalidate(name);
+			}
+		}
+	}
+
+	/**
+	 * Drops the history of deleted and renamed jobs.
+	 */
+	@Extension
+	public static final class ItemListenerImpl extends ItemListener {
+
+		@Override
+		public void onDeleted(Item item) {
+			invalidate(item.getFullName());
+		}
+
+		@Override
+		public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+			invalidate(oldFullName);
+		}
+	}
+}
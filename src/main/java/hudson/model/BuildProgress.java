@@ -0,0 +1,79 @@
+package hudson.model;
+
+import hudson.Util;
+
+import net.sf.json.JSONObject;
+
+/**
+ * How far a running build got, estimated from the duration of the job's
+ * recent builds as kept by {@link BuildHistory}, rather than by going through
+ * the job's builds each time as {@link Executor#getProgress()} does.
+ */
+public final class BuildProgress {
+
+	private final String url;
+
+	private final String displayName;
+
+	private final long elapsed;
+
+	private final long estimatedDuration;
+
+	BuildProgress(Run<?, ?> run, long estimatedDuration) {
+		this.url = run.getUrl();
+		this.displayName = run.getDisplayName();
+		this.elapsed = Math.max(0, System.currentTimeMillis() - run.getStartTimeInMillis());
+		this.estimatedDuration = estimatedDuration;
+	}
+
+	/**
+	 * @return the URL of the build, which identifies it on the page.
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	/**
+	 * @return the percentage done, at most 99, or -1 if unknown.
+	 */
+	public int getProgress() {
+		if (estimatedDuration <= 0) {
+			return -1;
+		}
+		return (int) Math.min(99, elapsed * 100 / estimatedDuration);
+	}
+
+	/**
+	 * @return milliseconds until the build is expected to finish, or -1 if
+	 *         unknown or overdue.
+	 */
+	public long getRemainingMillis() {
+		if (estimatedDuration <= 0 || elapsed >= estimatedDuration) {
+			return -1;
+		}
+		return estimatedDuration - elapsed;
+	}
+
+	/**
+	 * @return the time until the build is expected to finish, as shown by
+	 *         {@link Executor#getEstimatedRemainingTime()}.
+	 */
+	public String getRemaining() {
+		long remaining = getRemainingMillis();
+		return remaining < 0 ? "N/A" : Util.getTimeSpanString(remaining);
+	}
+
+	JSONObject toJSON() {
+		JSONObject json = new JSONObject();
+		json.put("url", url);
+		json.put("name", displayName);
+		json.put("progress", getProgress());
+		json.put("remaining", getRemaining());
+		json.put("remainingMillis", getRemainingMillis());
+		return json;
+	}
+}
@@ -36,8 +36,7 @@ public class ClaimWrapper {
 
 	static private ClaimBuildAction getClaimForRun(Run<?, ?> run) {
 		ClaimBuildAction claimAction = null;
-		List<ClaimBuildAction> claimActionList = run
-				.getActions(ClaimBuildAction.class);
+		List<ClaimBuildAction> claimActionList = RenderStats.claims(run);
 		if (claimActionList.size() == 1) {
 			claimAction = claimActionList.get(0);
 		} else if (claimActionList.size() > 1) {
@@ -54,7 +53,14 @@ public class ClaimWrapper {
 		return claimBuildAction.getReason();
 	}
 
+	/**
+	 * @return the claimant's name, resolved through the {@link UserNameCache}.
+	 */
 	public String getClaimedByName() {
-		return claimBuildAction.getClaimedByName();
+		String claimedBy = claimBuildAction.getClaimedBy();
+		if (claimedBy == null) {
+			return claimBuildAction.getClaimedByName();
+		}
+		return UserNameCache.getFullName(claimedBy);
 	}
 }
@@ -0,0 +1,95 @@
+package hudson.model;
+
+/**
+ * The state of a job shown on the radiator, packed in a byte: the two low bits
+ * hold its status, which is also its index in the {@link ViewEntryColors}
+ * palette, and the others hold flags. Colors are only looked up when a tile
+ * is written, so entries don't each keep references to them.
+ */
+final class EntryState {
+
+	/**
+	 * Statuses, from the result of the last finished build.
+	 */
+	static final int SUCCESS = 0;
+
+	static final int UNSTABLE = 1;
+
+	static final int BROKEN = 2;
+
+	static final int NOT_BUILT = 3;
+
+	private static final int STATUS_MASK = 3;
+
+	/**
+	 * Set if a build of the job is running.
+	 */
+	static final int BUILDING = 4;
+
+	/**
+	 * Set if the failure is claimed, as kept by {@link RadiatorHistoryLog}.
+	 */
+	static final int CLAIMED = 8;
+
+	private EntryState() {
+	}
+
+	/**
+	 * @param result
+	 *            result of the last finished build.
+	 * @param building
+	 *            whether a build is running.
+	 * @return the packed state.
+	 */
+	static byte of(Result result, boolean building) {
+		int status;
+		if (result.ordinal == Result.NOT_BUILT.ordinal) {
+			status = NOT_BUILT;
+		} else if (result.ordinal == Result.SUCCESS.ordinal) {
+			status = SUCCESS;
+		} else if (result.ordinal == Result.UNSTABLE.ordinal) {
+			status = UNSTABLE;
+		} else {
+			status = BROKEN;
+		}
+		return (byte) (building ? status | BUILDING : status);
+	}
+
+	/**
+	 * @return the packed state of any entry, including whether it is claimed.
+	 */
+	static byte of(IViewEntry entry) {
+		int status;
+		if (entry.getBroken()) {
+			status = BROKEN;
+		} else if (entry.getStable()) {
+			status = SUCCESS;
+		} else if (entry.isNotBuilt()) {
+			status = NOT_BUILT;
+		} else {
+			status = UNSTABLE;
+		}
+		if (entry.getBuilding()) {
+			status |= BUILDING;
+		}
+		if (!entry.getStable() && entry.isClaimed()) {
+			status |= CLAIMED;
+		}
+		return (byte) status;
+	}
+
+	/**
+	 * @return the status, which is also the palette index of the colors.
+	 */
+	static int status(byte state) {
+		return state & STATUS_MASK;
+	}
+
+	static boolean isBuilding(byte state) {
+		return (state & BUILDING) != 0;
+	}
+
+	static boolean isClaimed(byte state) {
+		return (state & CLAIMED) != 0;
+	}
+}
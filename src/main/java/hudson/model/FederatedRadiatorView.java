@@ -0,0 +1,315 @@
+package hudson.model;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Descriptor.FormException;
+import hudson.util.FormValidation;
+import hudson.util.Secret;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.servlet.ServletException;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * A radiator showing the jobs of this controller along with the radiators of
+ * other controllers. The remote radiators are fetched in the background, each
+ * within the configured timeout, and show their last known entries while they
+ * can't be reached. Only users who may configure the view see them, unless it
+ * shows them to everyone who may read it.
+ */
+public class FederatedRadiatorView extends RadiatorView {
+
+	private static final int DEFAULT_REMOTE_TIMEOUT = 5;
+
+	/**
+	 * User configuration - URLs of the radiator views of other controllers,
+	 * one per line, without credentials.
+	 */
+	String remoteViews = "";
+
+	/**
+	 * User configuration - user and API token to fetch each remote radiator
+	 * with, by URL.
+	 */
+	Map<String, Secret> remoteCredentials;
+
+	/**
+	 * User configuration - seconds to wait for the remote radiators.
+	 */
+	@DataBoundSetter
+	Integer remoteTimeout = DEFAULT_REMOTE_TIMEOUT;
+
+	/**
+	 * User configuration - show the entries of remote radiators to users who
+	 * may only read the view.
+	 */
+	Boolean showRemoteToReaders = false;
+
+	/**
+	 * @param name
+	 *            view name.
+	 */
+	@DataBoundConstructor
+	public FederatedRadiatorView(String name) {
+		super(name);
+	}
+
+	@Override
+	public ProjectViewEntry getContents() {
+		ProjectViewEntry content = super.getContents();
+		List<String> urls = getRemoteViewUrls();
+		if (!urls.isEmpty()) {
+			// as last fetched, so that a slow controller doesn't hold the snapshot.
+			for (IViewEntry entry : RemoteRadiator.getEntries(urls, getColors())) {
+				content.addBuild(entry);
+			}
+		}
+		return content;
+	}
+
+	/**
+	 * Remote controllers apply permissions this one doesn't know, so their
+	 * entries are only shown to users who may configure the view, unless it
+	 * shows them to readers.
+	 */
+	@Override
+	VisibleItems getVisibleItems() {
+		VisibleItems items = super.getVisibleItems();
+		if (Boolean.TRUE.equals(showRemoteToReaders) || hasPermission(CONFIGURE)) {
+			return items.withRemoteEntries();
+		}
+		return items;
+	}
+
+	/**
+	 * Starts fetching the remote radiators in the background.
+	 */
+	void fetchRemoteRadiators() {
+		for (String url : getRemoteViewUrls()) {
+			RemoteRadiator.of(url).fetch(getRemoteTimeout(), getRemoteCredentials(url));
+		}
+	}
+
+	/**
+	 * @return the URLs of the remote radiators.
+	 */
+	List<String> getRemoteViewUrls() {
+		return new ArrayList<String>(parseRemoteViews(remoteViews).keySet());
+	}
+
+	/**
+	 * @param url
+	 *            URL of a remote radiator.
+	 * @return the user and API token to fetch it with, or null.
+	 */
+	String getRemoteCredentials(String url) {
+		Secret credentials = remoteCredentials == null ? null : remoteCredentials.get(url);
+		if (credentials != null) {
+			return credentials.getPlainText();
+		}
+		// views saved with the credentials in their URLs.
+		return parseRemoteViews(remoteViews).get(url);
+	}
+
+	/**
+	 * @param value
+	 *            URLs of radiator views, one per line.
+	 * @return the URLs without their credentials, mapped to the credentials
+	 *         they were given with, if any.
+	 */
+	static Map<String, String> parseRemoteViews(String value) {
+		Map<String, String> urls = new LinkedHashMap<String, String>();
+		for (String line : StringUtils.defaultString(value).split("\\r?\\n")) {
+			String url = line.trim();
+			if (url.length() == 0) {
+				continue;
+			}
+			String userInfo = null;
+			try {
+				userInfo = new URL(url).getUserInfo();
+			} catch (MalformedURLException e) {
+				// kept as is, the form reports it.
+			}
+			if (userInfo != null) {
+				urls.put(url.replace(userInfo + "@", ""), userInfo);
+			} else if (!urls.containsKey(url)) {
+				urls.put(url, null);
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * Serves the state of the remote radiators fetched so far, as JSON.
+	 */
+	public void doRemoteRadiators(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		checkPermission(CONFIGURE);
+		JSONObject json = new JSONObject();
+		json.put("remotes", RemoteRadiator.toJSON());
+		RadiatorMetrics.send(rsp, json);
+	}
+
+	@Override
+	protected void submit(StaplerRequest req) throws ServletException, IOException, FormException {
+		setRemoteViews(StringUtils.defaultString(req.getParameter("remoteViews")));
+		setShowRemoteToReaders(Boolean.parseBoolean(req.getParameter("showRemoteToReaders")));
+		try {
+			this.remoteTimeout = Integer.parseInt(req.getParameter("remoteTimeout"));
+		} catch (NumberFormatException e) {
+			this.remoteTimeout = DEFAULT_REMOTE_TIMEOUT;
+		}
+		fetchRemoteRadiators();
+		super.submit(req);
+	}
+
+	private static boolean hasCredentials(Map<String, String> urls) {
+		for (String credentials : urls.values()) {
+			if (credentials != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the URLs of the remote radiators, never their credentials.
+	 */
+	public String getRemoteViews() {
+		return StringUtils.join(getRemoteViewUrls(), "\n");
+	}
+
+	/**
+	 * @param remoteViews
+	 *            URLs of radiator views, one per line. Credentials given in
+	 *            a URL are stored encrypted, apart from it; a URL given
+	 *            without credentials keeps those it was given before.
+	 *            Changing the URLs or giving credentials requires
+	 *            Overall/Administer, as this controller fetches the URLs and
+	 *            shows what it reads.
+	 */
+	@DataBoundSetter
+	public void setRemoteViews(String remoteViews) {
+		Map<String, String> urls = parseRemoteViews(remoteViews);
+		if (!getRemoteViewUrls().equals(new ArrayList<String>(urls.keySet())) || hasCredentials(urls)) {
+			Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
+		}
+		Map<String, Secret> credentials = new HashMap<String, Secret>();
+		for (Map.Entry<String, String> url : urls.entrySet()) {
+			String userInfo = url.getValue() != null ? url.getValue() : getRemoteCredentials(url.getKey());
+			if (userInfo != null) {
+				credentials.put(url.getKey(), Secret.fromString(userInfo));
+			}
+		}
+		this.remoteCredentials = credentials;
+		this.remoteViews = StringUtils.join(urls.keySet(), "\n");
+	}
+
+	public Integer getRemoteTimeout() {
+		return remoteTimeout == null || remoteTimeout <= 0 ? DEFAULT_REMOTE_TIMEOUT : remoteTimeout;
+	}
+
+	public Boolean getShowRemoteToReaders() {
+		return showRemoteToReaders;
+	}
+
+	/**
+	 * @param showRemoteToReaders
+	 *            whether users who may only read the view see the entries of
+	 *            remote radiators. Changing it requires Overall/Administer.
+	 */
+	@DataBoundSetter
+	public void setShowRemoteToReaders(Boolean showRemoteToReaders) {
+		if (Boolean.TRUE.equals(showRemoteToReaders) != Boolean.TRUE.equals(this.showRemoteToReaders)) {
+			Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
+		}
+		this.showRemoteToReaders = Boolean.TRUE.equals(showRemoteToReaders);
+	}
+
+	@Override
+	void checkAdministered(RadiatorView posted) {
+		super.checkAdministered(posted);
+		FederatedRadiatorView federated = (FederatedRadiatorView) posted;
+		if (!getRemoteCredentials().equals(federated.getRemoteCredentials())
+				|| Boolean.TRUE.equals(showRemoteToReaders) != Boolean.TRUE.equals(federated.showRemoteToReaders)) {
+			Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
+		}
+	}
+
+	/**
+	 * @return the URLs of the remote radiators, in order, mapped to their
+	 *         credentials, if any.
+	 */
+	private Map<String, String> getRemoteCredentials() {
+		Map<String, String> credentials = new LinkedHashMap<String, String>();
+		for (String url : getRemoteViewUrls()) {
+			credentials.put(url, getRemoteCredentials(url));
+		}
+		return credentials;
+	}
+
+	@Extension
+	public static final class DescriptorImpl extends ViewDescriptor {
+		public DescriptorImpl() {
+			super(FederatedRadiatorView.class);
+		}
+
+		@Override
+		public String getDisplayName() {
+			return "Federated Radiator";
+		}
+
+		/**
+		 * Checks if the include regular expression is valid.
+		 */
+		public FormValidation doCheckIncludeRegex(@QueryParameter String value) {
+			String v = Util.fixEmpty(value);
+			if (v != null) {
+				try {
+					Pattern.compile(v);
+				} catch (PatternSyntaxException pse) {
+					return FormValidation.error(pse.getMessage());
+				}
+			}
+			return FormValidation.ok();
+		}
+
+		/**
+		 * Checks that the remote views are URLs.
+		 */
+		public FormValidation doCheckRemoteViews(@QueryParameter String value) {
+			for (String line : StringUtils.defaultString(value).split("\\r?\\n")) {
+				String url = line.trim();
+				if (url.length() > 0) {
+					try {
+						String protocol = new URL(url).getProtocol();
+						if (!"http".equals(protocol) && !"https".equals(protocol)) {
+							return FormValidation.error("Not an http(s) URL: " + url);
+						}
+					} catch (MalformedURLException e) {
+						return FormValidation.error("Not a URL: " + url);
+					}
+				}
+			}
+			return FormValidation.ok();
+		}
+	}
+}
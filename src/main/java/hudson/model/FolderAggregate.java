@@ -0,0 +1,284 @@
+package hudson.model;
+
+import com.cloudbees.hudson.plugins.folder.computed.ComputedFolder;
+
+import hudson.Extension;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The state of every branch of a multibranch project or organization folder,
+ * as one {@link EntryState} byte per branch, with the counts shown on its
+ * tile. It is computed from the branches once, then updated as their builds
+ * start and finish, so collapsed folders never need an entry per branch.
+ */
+final class FolderAggregate {
+
+	private static final ConcurrentMap<String, FolderAggregate> AGGREGATES = new ConcurrentHashMap<String, FolderAggregate>();
+
+	private final ComputedFolder<?> folder;
+
+	/**
+	 * State of each branch, by full name.
+	 */
+	private final Map<String, Byte> states = new HashMap<String, Byte>();
+
+	/**
+	 * Number of branches with each status, and number of branches building.
+	 */
+	private final int[] counts = new int[4];
+
+	private int building;
+
+	/**
+	 * Names of the branches which are failing or unstable, relative to the
+	 * folder.
+	 */
+	private final TreeSet<String> failing = new TreeSet<String>();
+
+	private FolderAggregate(ComputedFolder<?> folder) {
+		this.folder = folder;
+		for (Job<?, ?> job : folder.getAllJobs()) {
+			RenderStats.entryScanned();
+			set(job, EntryState.of(RadiatorUtil.getLastFinishedResult(job), job.isBuilding()));
+		}
+	}
+
+	/**
+	 * @return the aggregate of the folder, computed if needed.
+	 */
+	static FolderAggregate of(ComputedFolder<?> folder) {
+		String name = folder.getFullName();
+		FolderAggregate aggregate = AGGREGATES.get(name);
+		if (aggregate == null || aggregate.folder != folder) {
+			aggregate = new FolderAggregate(folder);
+			AGGREGATES.put(name, aggregate);
+		}
+		return aggregate;
+	}
+
+	private void set(Job<?, ?> job, byte state) {
+		remove(job.getFullName());
+		states.put(job.getFullName(), state);
+		int status = EntryState.status(state);
+		counts[status]++;
+		if (EntryState.isBuilding(state)) {
+			building++;
+		}
+		if (status == EntryState.BROKEN || status == EntryState.UNSTABLE) {
+			failing.add(job.getRelativeNameFrom(folder));
+		}
+	}
+
+	private void remove(String fullName) {
+		Byte previous = states.remove(fullName);
+		if (previous == null) {
+			return;
+		}
+		counts[EntryState.status(previous)]--;
+		if (EntryState.isBuilding(previous)) {
+			building--;
+		}
+		failing.remove(fullName.substring(Math.min(fullName.length(), folder.getFullName().length() + 1)));
+	}
+
+	private synchronized void started(Job<?, ?> job) {
+		Byte previous = states.get(job.getFullName());
+		Result result = previous == null ? Result.NOT_BUILT : result(EntryState.status(previous));
+		set(job, EntryState.of(result, true));
+	}
+
+	private synchronized void finished(Job<?, ?> job) {
+		set(job, EntryState.of(RadiatorUtil.getLastFinishedResult(job), job.isBuilding()));
+	}
+
+	/**
+	 * Updates a branch from a build which just finished, rather than from its
+	 * {@link BuildHistory}, which may not hold the build yet. Aborted builds
+	 * keep the result of the build before them.
+	 */
+	private synchronized void finished(Run<?, ?> run) {
+		Job<?, ?> job = run.getParent();
+		Result result = run.getResult();
+		if (result == null || result == Result.ABORTED) {
+			Byte previous = states.get(job.getFullName());
+			result = previous == null ? Result.NOT_BUILT : result(EntryState.status(previous));
+		}
+		set(job, EntryState.of(result, job.isBuilding()));
+	}
+
+	/**
+	 * Updates a branch from the builds left once one is deleted, which is
+	 * still among them while listeners are told. Builds are usually deleted
+	 * oldest first, so this only looks at the latest ones.
+	 */
+	private synchronized void deleted(Run<?, ?> deleted) {
+		Job<?, ?> job = deleted.getParent();
+		Run<?, ?> run = RenderStats.run(job.getLastBuild());
+		while (run != null && (run == deleted || run.hasntStartedYet() || run.isBuilding()
+				|| run.isLogUpdated() || run.getResult() == Result.ABORTED)) {
+			run = RenderStats.run(run.getPreviousBuild());
+		}
+		set(job, EntryState.of(run == null ? Result.NOT_BUILT : run.getResult(), job.isBuilding()));
+	}
+
+	/**
+	 * Removes a branch, or all the branches of a deleted folder.
+	 */
+	private synchronized void deleted(String fullName) {
+		remove(fullName);
+		String prefix = fullName + "/";
+		for (String name : new ArrayList<String>(states.keySet())) {
+			if (name.startsWith(prefix)) {
+				remove(name);
+			}
+		}
+	}
+
+	/**
+	 * Records the state of the folder in the history of the views showing it.
+	 */
+	private void record(long timestamp) {
+		RadiatorHistoryLog.changed(folder.getFullName(), timestamp, getState());
+	}
+
+	private static Result result(int status) {
+		switch (status) {
+		case EntryState.SUCCESS:
+			return Result.SUCCESS;
+		case EntryState.UNSTABLE:
+			return Result.UNSTABLE;
+		case EntryState.BROKEN:
+			return Result.FAILURE;
+		default:
+			return Result.NOT_BUILT;
+		}
+	}
+
+	/**
+	 * @return the worst status of the branches, packed with whether any is
+	 *         building.
+	 */
+	synchronized byte getState() {
+		Result worst = Result.NOT_BUILT;
+		if (counts[EntryState.BROKEN] > 0) {
+			worst = Result.FAILURE;
+		} else if (counts[EntryState.UNSTABLE] > 0) {
+			worst = Result.UNSTABLE;
+		} else if (counts[EntryState.SUCCESS] > 0) {
+			worst = Result.SUCCESS;
+		}
+		return EntryState.of(worst, building > 0);
+	}
+
+	synchronized int getBranchCount() {
+		return states.size();
+	}
+
+	synchronized int getBuildingCount() {
+		return building;
+	}
+
+	/**
+	 * @return the failing and unstable branches, by name.
+	 */
+	synchronized List<String> getFailingBranches() {
+		return new ArrayList<String>(failing);
+	}
+
+	/**
+	 * @param fullName
+	 *            full name of an item, which may have been moved since.
+	 * @return the aggregates of every collapsed folder holding the item, such
+	 *         as both an organization folder and the multibranch project of a
+	 *         branch, closest first.
+	 */
+	private static List<FolderAggregate> find(String fullName) {
+		List<FolderAggregate> aggregates = new ArrayList<FolderAggregate>();
+		for (int slash = fullName.lastIndexOf('/'); slash > 0; slash = fullName.lastIndexOf('/', slash - 1)) {
+			FolderAggregate aggregate = AGGREGATES.get(fullName.substring(0, slash));
+			if (aggregate != null) {
+				aggregates.add(aggregate);
+			}
+		}
+		return aggregates;
+	}
+
+	/**
+	 * Updates the branches as their builds start and finish.
+	 */
+	@Extension
+	public static final class RunListenerImpl extends RunListener<Run> {
+
+		@Override
+		public void onStarted(Run run, TaskListener listener) {
+			for (FolderAggregate aggregate : find(run.getParent().getFullName())) {
+				aggregate.started(run.getParent());
+				aggregate.record(run.getStartTimeInMillis());
+			}
+		}
+
+		@Override
+		public void onFinalized(Run run) {
+			for (FolderAggregate aggregate : find(run.getParent().getFullName())) {
+				aggregate.finished((Run<?, ?>) run);
+				aggregate.record(run.getStartTimeInMillis() + run.getDuration());
+			}
+		}
+
+		@Override
+		public void onDeleted(Run run) {
+			for (FolderAggregate aggregate : find(run.getParent().getFullName())) {
+				aggregate.deleted((Run<?, ?>) run);
+				aggregate.record(System.currentTimeMillis());
+			}
+		}
+	}
+
+	/**
+	 * Adds and removes branches as they are indexed, and drops the aggregate
+	 * of folders which are deleted or moved.
+	 */
+	@Extension
+	public static final class ItemListenerImpl extends ItemListener {
+
+		@Override
+		public void onCreated(Item item) {
+			if (!(item instanceof Job)) {
+				return;
+			}
+			for (FolderAggregate aggregate : find(item.getFullName())) {
+				aggregate.finished((Job<?, ?>) item);
+			}
+		}
+
+		@Override
+		public void onDeleted(Item item) {
+			AGGREGATES.remove(item.getFullName());
+			for (FolderAggregate aggregate : find(item.getFullName())) {
+				aggregate.deleted(item.getFullName());
+			}
+		}
+
+		@Override
+		public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+			AGGREGATES.remove(oldFullName);
+			for (FolderAggregate aggregate : find(oldFullName)) {
+				aggregate.deleted(oldFullName);
+			}
+			if (item instanceof Job) {
+				for (FolderAggregate aggregate : find(newFullName)) {
+					aggregate.finished((Job<?, ?>) item);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package hudson.model;
+
+import com.cloudbees.hudson.plugins.folder.computed.ComputedFolder;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A multibranch project or organization folder shown as a single tile, with
+ * the worst status of its branches, how many are building and which are
+ * failing, as kept by {@link FolderAggregate}.
+ */
+public class FolderViewEntry implements IViewEntry {
+
+	private final RadiatorView radiatorView;
+
+	private final String name;
+
+	private final String url;
+
+	private final byte state;
+
+	private final int branchCount;
+
+	private final int buildingCount;
+
+	private final List<String> failingBranches;
+
+	FolderViewEntry(RadiatorView radiatorView, ComputedFolder<?> folder) {
+		this.radiatorView = radiatorView;
+		this.name = folder.getFullName();
+		this.url = folder.getUrl();
+		FolderAggregate aggregate = FolderAggregate.of(folder);
+		// copied so that the tile doesn't change while it is shown.
+		synchronized (aggregate) {
+			this.state = aggregate.getState();
+			this.branchCount = aggregate.getBranchCount();
+			this.buildingCount = aggregate.getBuildingCount();
+			this.failingBranches = Collections.unmodifiableList(aggregate.getFailingBranches());
+		}
+	}
+
+	/**
+	 * @return <code>true</code>, for templates to show the branches.
+	 */
+	public boolean isFolder() {
+		return true;
+	}
+
+	public int getBranchCount() {
+		return branchCount;
+	}
+
+	public int getBuildingCount() {
+		return buildingCount;
+	}
+
+	/**
+	 * @return the failing and unstable branches, by name.
+	 */
+	public List<String> getFailingBranches() {
+		return failingBranches;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return false, as branches are queued rather than the folder.
+	 */
+	public Boolean getQueued() {
+		return false;
+	}
+
+	public Integer getQueueNumber() {
+		return null;
+	}
+
+	public String getStatus() {
+		if (isNotBuilt()) {
+			return "never built";
+		}
+		if (getStable()) {
+			return "successful";
+		}
+		if (getBroken()) {
+			return "failing";
+		}
+		return "unstable";
+	}
+
+	public String getBackgroundColor() {
+		return radiatorView.getColors().getBackground(EntryState.status(state));
+	}
+
+	public String getColor() {
+		return radiatorView.getColors().getForeground(EntryState.status(state));
+	}
+
+	public Boolean getBroken() {
+		return EntryState.status(state) == EntryState.BROKEN;
+	}
+
+	public Boolean getBuilding() {
+		return EntryState.isBuilding(state);
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the URL of the folder, which lists the branches.
+	 */
+	public String getLastBuildUrl() {
+		return url;
+	}
+
+	/**
+	 * @return no progress, as it is shown on the branches.
+	 */
+	public List<BuildProgress> getProgress() {
+		return Collections.emptyList();
+	}
+
+	public int getTestCount() {
+		return 0;
+	}
+
+	public int getFailCount() {
+		return 0;
+	}
+
+	public int getSuccessCount() {
+		return 0;
+	}
+
+	public String getDiff() {
+		return "";
+	}
+
+	/**
+	 * @return no culprit, as they are found on the branches.
+	 */
+	public String getCulprit() {
+		return " - ";
+	}
+
+	public Collection<String> getCulprits() {
+		return Collections.emptyList();
+	}
+
+	public String getDiffColor() {
+		return "#FFFFFF";
+	}
+
+	public String getSuccessPercentage() {
+		return "";
+	}
+
+	public String getLastCompletedBuild() {
+		return null;
+	}
+
+	public String getLastStableBuild() {
+		return null;
+	}
+
+	public boolean getStable() {
+		return EntryState.status(state) == EntryState.SUCCESS;
+	}
+
+	public String getClaim() {
+		return null;
+	}
+
+	public String getUnclaimedMatrixBuilds() {
+		return "";
+	}
+
+	/**
+	 * @return the failing branches, joined for display.
+	 */
+	public String getFailingBranchNames() {
+		return StringUtils.join(failingBranches, ", ");
+	}
+
+	public Result getLastFinishedResult() {
+		switch (EntryState.status(state)) {
+		case EntryState.SUCCESS:
+			return Result.SUCCESS;
+		case EntryState.UNSTABLE:
+			return Result.UNSTABLE;
+		case EntryState.BROKEN:
+			return Result.FAILURE;
+		default:
+			return Result.NOT_BUILT;
+		}
+	}
+
+	public boolean hasChildren() {
+		return false;
+	}
+
+	public boolean isClaimed() {
+		return false;
+	}
+
+	public boolean isCompletelyClaimed() {
+		return false;
+	}
+
+	public boolean isNotBuilt() {
+		return EntryState.status(state) == EntryState.NOT_BUILT;
+	}
+
+	/**
+	 * @return null, the entry being local.
+	 */
+	public String getSource() {
+		return null;
+	}
+
+	public boolean isSourceStale() {
+		return false;
+	}
+}
@@ -17,6 +17,11 @@ public interface IViewEntry {
 	 */
 	public abstract Boolean getQueued();
 
+	/**
+	 * @return the status used to style this job, e.g. "failing" or "claimed"
+	 */
+	public abstract String getStatus();
+
 	/**
 	 * @return background color for this job
 	 */
@@ -125,4 +130,22 @@ public interface IViewEntry {
 
 	public boolean isNotBuilt();
 
+	/**
+	 * @return the URL of the remote radiator showing the entry, or null if the
+	 *         entry is local.
+	 */
+	public String getSource();
+
+	/**
+	 * @return <code>true</code> if the entry comes from a remote radiator
+	 *         which could not be fetched lately.
+	 */
+	public boolean isSourceStale();
+
+	/**
+	 * @return <code>true</code> if the entry is a folder shown as a single
+	 *         tile, along with its branches.
+	 */
+	public boolean isFolder();
+
 }
\ No newline at end of file
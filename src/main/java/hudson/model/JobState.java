@@ -0,0 +1,578 @@
+package hudson.model;
+
+import hudson.Functions;
+import hudson.Util;
+import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixRun;
+import hudson.model.RenderStats.Phase;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * What the radiator shows of a job, independently of the views showing it.
+ * States are shared by every {@link RadiatorView} through the
+ * {@link JobStatusRegistry}, which drops them when the job's builds change, so
+ * each value is computed at most once per job between two builds. Values are
+ * computed on first use, as not every view shows all of them.
+ */
+final class JobState {
+
+	static final String NOT_CLAIMED = "Not Claimed.";
+
+	private final Job<?, ?> job;
+
+	private final String name;
+
+	private final long created = System.currentTimeMillis();
+
+	private final Result lastFinishedResult;
+
+	/**
+	 * Status and flags, packed by {@link EntryState}.
+	 */
+	private final byte state;
+
+	private volatile int[] tests;
+
+	private volatile String diff;
+
+	private volatile Collection<String> culprits;
+
+	private volatile boolean claimComputed;
+
+	private volatile String claim;
+
+	private volatile String unclaimedMatrixBuilds;
+
+	private volatile String lastBuildUrl;
+
+	private volatile HealthReport buildHealth;
+
+	/**
+	 * Start time and duration of the last stable and last completed builds,
+	 * or an empty array if there is none.
+	 */
+	private volatile long[] lastStableBuild;
+
+	private volatile long[] lastCompletedBuild;
+
+	JobState(Job<?, ?> job) {
+		this.job = job;
+		this.name = job.getFullName();
+		long start = RenderStats.phaseStart();
+		try {
+			this.lastFinishedResult = RadiatorUtil.getLastFinishedResult(job);
+			this.state = EntryState.of(lastFinishedResult, isBuilding(job.getIconColor()));
+		} finally {
+			RenderStats.phaseEnd(start, name, Phase.STATUS);
+		}
+	}
+
+	private static boolean isBuilding(BallColor color) {
+		switch (color) {
+		case BLUE_ANIME:
+		case YELLOW_ANIME:
+		case RED_ANIME:
+		case GREY_ANIME:
+		case DISABLED_ANIME:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	Job<?, ?> getJob() {
+		return job;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * @return when this state was computed.
+	 */
+	long getCreated() {
+		return created;
+	}
+
+	Result getLastFinishedResult() {
+		return lastFinishedResult;
+	}
+
+	/**
+	 * @return the status and flags of the job, packed by {@link EntryState}.
+	 */
+	byte getState() {
+		return state;
+	}
+
+	/**
+	 * @return how the last finished build compares to the previous one.
+	 * @see BuildHistory#getTrend()
+	 */
+	String getTrend() {
+		return BuildHistory.of(job).getTrend();
+	}
+
+	/**
+	 * @return the job's build health, as shown by the build stability icon.
+	 *         Health reports look at the recent builds and their actions, so
+	 *         they are only computed once per build.
+	 */
+	HealthReport getBuildHealth() {
+		HealthReport health = buildHealth;
+		if (health == null) {
+			long start = RenderStats.phaseStart();
+			try {
+				health = job.getBuildHealth();
+				buildHealth = health;
+			} finally {
+				RenderStats.phaseEnd(start, name, Phase.STATUS);
+			}
+		}
+		return health;
+	}
+
+	String getLastBuildUrl() {
+		String url = lastBuildUrl;
+		if (url == null) {
+			Run<?, ?> lastBuild = RenderStats.run(job.getLastBuild());
+			url = lastBuild == null ? job.getUrl() : lastBuild.getUrl();
+			lastBuildUrl = url;
+		}
+		return url;
+	}
+
+	/**
+	 * @return all the currently building runs for this job. Not cached, as
+	 *         it is only used while the job is building. Empty if the job
+	 *         wasn't building when this state was computed: following
+	 *         {@link Run#getPreviousBuildInProgress()} from builds loaded from
+	 *         disk walks the job's whole history.
+	 */
+	List<Run<?, ?>> getBuildsInProgress() {
+		List<Run<?, ?>> runs = new ArrayList<Run<?, ?>>();
+		if (!EntryState.isBuilding(state)) {
+			return runs;
+		}
+
+		Run<?, ?> run = RenderStats.run(this.job.getLastBuild());
+		if (run != null) {
+			if (run.isBuilding()) {
+				runs.add(run);
+			}
+
+			Run<?, ?> prev = RenderStats.run(run.getPreviousBuildInProgress());
+			while (prev != null) {
+				runs.add(prev);
+				prev = RenderStats.run(prev.getPreviousBuildInProgress());
+			}
+		}
+
+		return runs;
+	}
+
+	/**
+	 * @return the progress of the builds in progress, estimated from the
+	 *         duration of the recent builds.
+	 */
+	List<BuildProgress> getProgress() {
+		List<Run<?, ?>> runs = getBuildsInProgress();
+		if (runs.isEmpty()) {
+			return Collections.emptyList();
+		}
+		long estimatedDuration = BuildHistory.of(job).getEstimatedDuration();
+		List<BuildProgress> progress = new ArrayList<BuildProgress>(runs.size());
+		for (Run<?, ?> run : runs) {
+			progress.add(new BuildProgress(run, estimatedDuration));
+		}
+		return progress;
+	}
+
+	/**
+	 * @return milliseconds until the first of the builds in progress is
+	 *         expected to finish, or -1 if not building or unknown.
+	 */
+	long getEstimatedRemainingTime() {
+		long remaining = -1;
+		for (BuildProgress progress : getProgress()) {
+			long eta = progress.getRemainingMillis();
+			if (eta >= 0 && (remaining < 0 || eta < remaining)) {
+				remaining = eta;
+			}
+		}
+		return remaining;
+	}
+
+	int getTestCount() {
+		return getTests()[0];
+	}
+
+	int getFailCount() {
+		return getTests()[1];
+	}
+
+	/**
+	 * @return total and failed test counts of the last successful build.
+	 */
+	private int[] getTests() {
+		int[] counts = tests;
+		if (counts == null) {
+			long start = RenderStats.phaseStart();
+			try {
+				counts = BuildHistory.of(job).getTests();
+				if (counts != null) {
+					tests = counts;
+					return counts;
+				}
+				counts = new int[2];
+				Run<?, ?> run = RenderStats.run(this.job.getLastSuccessfulBuild());
+				if (run != null) {
+					AbstractTestResultAction<?> action = RenderStats.testResults(run);
+					if (action != null) {
+						counts[0] = action.getTotalCount();
+						counts[1] = action.getFailCount();
+					}
+				}
+				tests = counts;
+			} finally {
+				RenderStats.phaseEnd(start, name, Phase.TESTS);
+			}
+		}
+		return counts;
+	}
+
+	String getDiff() {
+		String value = diff;
+		if (value == null) {
+			long start = RenderStats.phaseStart();
+			try {
+				value = BuildHistory.of(job).getDiff();
+				if (value == null) {
+					value = computeDiff();
+				}
+				diff = value;
+			} finally {
+				RenderStats.phaseEnd(start, name, Phase.TESTS);
+			}
+		}
+		return value;
+	}
+
+	private String computeDiff() {
+		Run<?, ?> run = RenderStats.run(this.job.getLastSuccessfulBuild());
+		if (run != null) {
+			Run<?, ?> previous = this.getLastSuccessfulFrom(run);
+			if (previous != null) {
+				AbstractTestResultAction<?> tests = RenderStats.testResults(run);
+				AbstractTestResultAction<?> prevTests = RenderStats.testResults(previous);
+				if (tests != null && prevTests != null) {
+					int currentSuccess = tests.getTotalCount()
+							- tests.getFailCount();
+					int prevSuccess = prevTests.getTotalCount()
+							- prevTests.getFailCount();
+					int diff = currentSuccess - prevSuccess;
+					if (diff != 0) {
+						return Functions.getDiffString(diff);
+					} else {
+						return "";
+					}
+				}
+			}
+		}
+		return "";
+	}
+
+	/**
+	 * @param run
+	 *            a run
+	 * @return the last successful run prior to the given run
+	 */
+	private Run<?, ?> getLastSuccessfulFrom(Run<?, ?> run) {
+		Run<?, ?> previousBuild = RenderStats.run(run.getPreviousBuild());
+		while (hasPreviousBuildBuildingOrWithResultWorseThanUnstable(previousBuild)) {
+			previousBuild = RenderStats.run(previousBuild.getPreviousBuild());
+		}
+		return previousBuild;
+	}
+
+	private boolean hasPreviousBuildBuildingOrWithResultWorseThanUnstable(Run<?, ?> previousBuild) {
+		if (previousBuild != null) {
+			if (previousBuild.isBuilding()) {
+				return true;
+			}
+			final Result result = previousBuild.getResult();
+			if (result == null) {
+				return true;
+			}
+			if (result.isWorseThan(Result.UNSTABLE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	Collection<String> getCulprits() {
+		Collection<String> value = culprits;
+		if (value == null) {
+			long start = RenderStats.phaseStart();
+			try {
+				value = Collections.unmodifiableSet(computeCulprits());
+				culprits = value;
+			} finally {
+				RenderStats.phaseEnd(start, name, Phase.CULPRITS);
+			}
+		}
+		return value;
+	}
+
+	private Set<String> computeCulprits() {
+		Run<?, ?> run = RenderStats.run(this.job.getLastBuild());
+		Set<String> culprits = new HashSet<String>();
+		while (run != null) {
+			if (run instanceof AbstractBuild<?, ?>) {
+
+				AbstractBuild<?, ?> build = (AbstractBuild<?, ?>) run;
+
+				Iterator<User> it = build.getCulprits().iterator();
+				while (it.hasNext()) {
+					culprits.add(UserNameCache.getFullName(it.next()));
+				}
+			}
+			run = RenderStats.run(run.getPreviousBuild());
+			if (run != null && Result.SUCCESS.equals(run.getResult())) {
+				// don't look for culprits in successful builds.
+				run = null;
+			}
+		}
+		return culprits;
+	}
+
+	/**
+	 * @return start time and duration of the last stable build, or null.
+	 */
+	long[] getLastStableBuild() {
+		long[] value = lastStableBuild;
+		if (value == null) {
+			value = BuildHistory.of(job).getLastStableBuild();
+			if (value == null) {
+				value = timing(RenderStats.run(job.getLastStableBuild()));
+			}
+			lastStableBuild = value;
+		}
+		return value.length == 0 ? null : value;
+	}
+
+	/**
+	 * @return start time and duration of the last completed build, or null.
+	 */
+	long[] getLastCompletedBuild() {
+		long[] value = lastCompletedBuild;
+		if (value == null) {
+			value = BuildHistory.of(job).getLastCompletedBuild();
+			if (value == null) {
+				value = timing(RenderStats.run(job.getLastCompletedBuild()));
+			}
+			lastCompletedBuild = value;
+		}
+		return value.length == 0 ? null : value;
+	}
+
+	private static long[] timing(Run<?, ?> build) {
+		if (build == null) {
+			return new long[0];
+		}
+		return new long[] { build.getTimeInMillis(), build.getDuration() };
+	}
+
+	/**
+	 * @return how long ago a build started, as shown by
+	 *         {@link Run#getTimestampString()}.
+	 */
+	static String getTimestampString(long[] timing) {
+		return Util.getPastTimeString(System.currentTimeMillis() - timing[0]);
+	}
+
+	/**
+	 * @return how long a build took, as shown by
+	 *         {@link Run#getDurationString()}.
+	 */
+	static String getDurationString(long[] timing) {
+		return Util.getTimeSpanString(timing[1]);
+	}
+
+	/**
+	 * @return <code>true</code> if the claim is known, so reading it won't
+	 *         look at the job's builds.
+	 */
+	boolean isClaimComputed() {
+		return claimComputed || Jenkins.getActiveInstance().getPlugin("claim") == null;
+	}
+
+	/**
+	 * Writes the values which have been computed, with the keys read by
+	 * {@link StoredViewEntry}, leaving out the ones no render needed so far.
+	 */
+	void putComputed(JSONObject json) {
+		if (lastFinishedResult != null) {
+			json.put("lastFinishedResult", lastFinishedResult.toString());
+		}
+		if (lastBuildUrl != null) {
+			json.put("lastBuildUrl", lastBuildUrl);
+		}
+		if (unclaimedMatrixBuilds != null) {
+			json.put("unclaimedMatrixBuilds", unclaimedMatrixBuilds);
+		}
+		Collection<String> culprits = this.culprits;
+		if (culprits != null && !culprits.isEmpty()) {
+			json.put("culprit", StringUtils.join(culprits, ", "));
+		}
+		int[] counts = tests;
+		if (counts != null) {
+			json.put("testCount", counts[0]);
+			json.put("failCount", counts[1]);
+		}
+		if (diff != null) {
+			json.put("diff", diff);
+		}
+		long[] build = lastStableBuild;
+		if (build != null && build.length > 0) {
+			json.put("lastStableBuild", getTimestampString(build) + " (in " + getDurationString(build) + ")");
+		}
+		build = lastCompletedBuild;
+		if (build != null && build.length > 0) {
+			json.put("lastCompletedBuild", getTimestampString(build) + " (" + getDurationString(build) + ")");
+		}
+	}
+
+	/**
+	 * If the claims plugin is installed, this will get details of the claimed
+	 * build failures.
+	 *
+	 * @return details of any claims for the broken build, or null.
+	 */
+	String getClaim() {
+		// check we have claim plugin
+		if (Jenkins.getActiveInstance().getPlugin("claim") == null) {
+			return null;
+		}
+		if (!claimComputed) {
+			long start = RenderStats.phaseStart();
+			try {
+				claim = computeClaim();
+				claimComputed = true;
+			} finally {
+				RenderStats.phaseEnd(start, name, Phase.CLAIMS);
+			}
+		}
+		return claim;
+	}
+
+	private String computeClaim() {
+		Run<?, ?> lastBuild = getLastCompletedRun();
+		if (lastBuild == null) {
+			return null;
+		}
+		// find the claim
+		final String claim;
+		if (lastBuild instanceof hudson.matrix.MatrixBuild) {
+			MatrixBuild matrixBuild = (hudson.matrix.MatrixBuild) lastBuild;
+			claim = buildMatrixClaimString(matrixBuild, true);
+		} else {
+			ClaimWrapper claimWrapper = ClaimWrapper.builder(lastBuild);
+			if (claimWrapper != null && claimWrapper.isClaimed()) {
+				StringBuilder sb = new StringBuilder();
+				if (claimWrapper.getReason() != null) {
+					sb.append(claimWrapper.getReason()).append(" ");
+				}
+				sb.append("(");
+				sb.append(claimWrapper.getClaimedByName());
+				sb.append(").");
+				claim = sb.toString();
+			} else {
+				claim = NOT_CLAIMED;
+			}
+		}
+		return claim;
+	}
+
+	String getUnclaimedMatrixBuilds() {
+		if (Jenkins.getActiveInstance().getPlugin("claim") == null) {
+			return "";
+		}
+		String value = unclaimedMatrixBuilds;
+		if (value == null) {
+			long start = RenderStats.phaseStart();
+			try {
+				Run<?, ?> lastBuild = getLastCompletedRun();
+				if (lastBuild instanceof hudson.matrix.MatrixBuild) {
+					value = buildMatrixClaimString((hudson.matrix.MatrixBuild) lastBuild, false);
+				} else {
+					value = "";
+				}
+				unclaimedMatrixBuilds = value;
+			} finally {
+				RenderStats.phaseEnd(start, name, Phase.CLAIMS);
+			}
+		}
+		return value;
+	}
+
+	private Run<?,?> getLastCompletedRun() {
+		Run<?, ?> run = RenderStats.run(job.getLastBuild());
+		while (run != null && run.isBuilding()) {
+			// claims can only be made against builds once they've finished,
+			// so check the previous build if currently building.
+			run = RenderStats.run(run.getPreviousBuild());
+		}
+		return run;
+	}
+
+	private String buildMatrixClaimString(MatrixBuild matrixBuild, boolean includeClaimed) {
+		StringBuilder claimed = new StringBuilder();
+		StringBuilder unclaimed = new StringBuilder();
+		for (MatrixRun combination : matrixBuild.getRuns()) {
+			if (matrixBuild.getNumber() != combination.getNumber()) {
+				continue;
+			}
+			Result result = combination.getResult();
+			if (!(Result.FAILURE.equals(result) || Result.UNSTABLE.equals(result))) {
+				continue;
+			}
+			ClaimWrapper claimWrapper = ClaimWrapper.builder(combination);
+			if (claimWrapper != null && claimWrapper.isClaimed()) {
+				claimed.append(combination.getParent().getCombination()
+						.toString());
+				claimed.append(": ");
+				if (claimWrapper.getReason() != null) {
+					claimed.append(claimWrapper.getReason()).append(" ");
+				}
+				claimed.append("(");
+				claimed.append(claimWrapper.getClaimedByName());
+				claimed.append(").<br/>");
+			} else {
+				unclaimed.append(combination.getParent().getCombination().toString());
+				unclaimed.append(": ").append(NOT_CLAIMED).append("<br/>");
+			}
+		}
+
+		String claims = unclaimed.toString();
+		if (includeClaimed) {
+			claims += claimed.toString();
+		}
+		return claims;
+	}
+}
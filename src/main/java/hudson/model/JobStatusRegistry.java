@@ -0,0 +1,141 @@
+package hudson.model;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.matrix.MatrixConfiguration;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SaveableListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link JobState} of every job shown by a radiator, shared by all the
+ * {@link RadiatorView}s of the controller. Many radiators usually show the same
+ * jobs, so the cost of a render now depends on the number of distinct jobs
+ * rather than on the number of views showing them.
+ * <p>
+ * States are dropped when a build of their job starts, completes, is deleted
+ * or saved (which is how claims are stored), and when the job itself changes.
+ * They also expire after <code>hudson.model.JobStatusRegistry.maxAge</code>
+ * milliseconds, for what the listeners can't see, such as a culprit changing
+ * their name.
+ */
+public final class JobStatusRegistry {
+
+	static final long MAX_AGE = Long.getLong(JobStatusRegistry.class.getName() + ".maxAge", 5 * 60 * 1000L);
+
+	private static final ConcurrentMap<String, JobState> STATES = new ConcurrentHashMap<String, JobState>();
+
+	private JobStatusRegistry() {
+	}
+
+	/**
+	 * @param job
+	 *            a job to show.
+	 * @return the job's current state. Profiled renders always get a freshly
+	 *         computed state, so they show what computing it costs. Such
+	 *         states are neither cached here nor held by shared snapshots.
+	 */
+	static JobState get(Job<?, ?> job) {
+		if (RenderStats.isProfiling()) {
+			return new JobState(job);
+		}
+		String name = job.getFullName();
+		JobState state = STATES.get(name);
+		if (state == null || state.getJob() != job
+				|| System.currentTimeMillis() - state.getCreated() > MAX_AGE) {
+			// two renders may both compute it, which is cheaper than locking.
+			state = new JobState(job);
+			STATES.put(name, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Drops the state of a job, which is computed again next time it is shown.
+	 */
+	static void invalidate(Item item) {
+		if (item != null) {
+			STATES.remove(item.getFullName());
+		}
+	}
+
+	/**
+	 * @return the number of jobs with a state.
+	 */
+	static int size() {
+		return STATES.size();
+	}
+
+	/**
+	 * Drops the state of a job when one of its builds changes.
+	 */
+	@Extension
+	public static final class RunListenerImpl extends RunListener<Run> {
+
+		@Override
+		public void onStarted(Run run, TaskListener listener) {
+			invalidate(run.getParent());
+		}
+
+		@Override
+		public void onCompleted(Run run, TaskListener listener) {
+			invalidate(run.getParent());
+		}
+
+		@Override
+		public void onFinalized(Run run) {
+			invalidate(run.getParent());
+		}
+
+		@Override
+		public void onDeleted(Run run) {
+			invalidate(run.getParent());
+		}
+	}
+
+	/**
+	 * Drops the state of a job when it changes.
+	 */
+	@Extension
+	public static final class ItemListenerImpl extends ItemListener {
+
+		@Override
+		public void onUpdated(Item item) {
+			invalidate(item);
+		}
+
+		@Override
+		public void onDeleted(Item item) {
+			invalidate(item);
+		}
+
+		@Override
+		public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+			STATES.remove(oldFullName);
+		}
+	}
+
+	/**
+	 * Drops the state of a job when one of its builds is saved, which is
+	 * notably the case when it gets claimed. Claims of a matrix build's
+	 * configurations are shown by the matrix job, so its state is dropped
+	 * too.
+	 */
+	@Extension
+	public static final class SaveableListenerImpl extends SaveableListener {
+
+		@Override
+		public void onChange(Saveable o, XmlFile file) {
+			if (o instanceof Run) {
+				Job<?, ?> job = ((Run<?, ?>) o).getParent();
+				invalidate(job);
+				if (job instanceof MatrixConfiguration) {
+					invalidate(((MatrixConfiguration) job).getParent());
+				}
+			}
+		}
+	}
+}
@@ -1,46 +1,30 @@
 package hudson.model;
 
 import hudson.Functions;
-import hudson.matrix.MatrixRun;
-import hudson.matrix.MatrixBuild;
-import hudson.tasks.test.AbstractTestResultAction;
+import hudson.model.RenderStats.Phase;
 
 import java.text.NumberFormat;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
-import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+
 import org.apache.commons.lang.StringUtils;
 
 /**
  * Represents a job to be shown in a view. Based heavily on the XFPanelEntry in
  * XFPanel plugin.
+ * <p>
+ * Everything which doesn't depend on the view is read from the job's
+ * {@link JobState}, shared with every other view showing the job.
  * 
  * @author jrenaut
  */
 public class JobViewEntry implements IViewEntry {
 
-	private static final String NOT_CLAIMED = "Not Claimed.";
-
 	private final RadiatorView radiatorView;
 
-	private Job<?, ?> job;
-
-	private String backgroundColor;
-
-	private String color;
-
-	private Boolean broken = false;
-
-	private Boolean building = false;
-
-	private boolean stable = false;
-
-	private boolean notBuilt = false;
+	private final JobState state;
 
 	/**
 	 * C'tor
@@ -52,15 +36,23 @@ public class JobViewEntry implements IViewEntry {
 	 */
 	public JobViewEntry(RadiatorView radiatorView, Job<?, ?> job) {
 		this.radiatorView = radiatorView;
-		this.job = job;
-		this.findStatus();
+		this.state = JobStatusRegistry.get(job);
+	}
+
+	/**
+	 * @param state
+	 *            the state to show, rather than the one shared by views.
+	 */
+	JobViewEntry(RadiatorView radiatorView, JobState state) {
+		this.radiatorView = radiatorView;
+		this.state = state;
 	}
 
 	/**
 	 * @return the job
 	 */
 	public Job<?, ?> getJob() {
-		return this.job;
+		return state.getJob();
 	}
 
 	/*
@@ -69,7 +61,7 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getName()
 	 */
 	public String getName() {
-		return job.getFullName();
+		return state.getName();
 	}
 
 	/*
@@ -78,14 +70,24 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getQueued()
 	 */
 	public Boolean getQueued() {
-		return this.job.isInQueue();
+		long start = RenderStats.phaseStart();
+		try {
+			return state.getJob().isInQueue();
+		} finally {
+			RenderStats.phaseEnd(start, getName(), Phase.QUEUE);
+		}
 	}
 
 	/**
 	 * @return the job's queue number, if any
 	 */
 	public Integer getQueueNumber() {
-		return this.radiatorView.placeInQueue.get(this.job.getQueueItem());
+		long start = RenderStats.phaseStart();
+		try {
+			return this.radiatorView.placeInQueue.get(state.getJob().getQueueItem());
+		} finally {
+			RenderStats.phaseEnd(start, getName(), Phase.QUEUE);
+		}
 	}
 
 	/*
@@ -94,7 +96,7 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getBackgroundColor()
 	 */
 	public String getBackgroundColor() {
-		return this.backgroundColor;
+		return getColors().getBackground(EntryState.status(state.getState()));
 	}
 
 	public String getStatus() {
@@ -119,7 +121,7 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getColor()
 	 */
 	public String getColor() {
-		return this.color;
+		return getColors().getForeground(EntryState.status(state.getState()));
 	}
 
 	/*
@@ -128,7 +130,7 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getBroken()
 	 */
 	public Boolean getBroken() {
-		return this.broken;
+		return EntryState.status(state.getState()) == EntryState.BROKEN;
 	}
 
 	/*
@@ -137,7 +139,7 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getBuilding()
 	 */
 	public Boolean getBuilding() {
-		return this.building;
+		return EntryState.isBuilding(state.getState());
 	}
 
 	/*
@@ -146,37 +148,56 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getUrl()
 	 */
 	public String getUrl() {
-		return this.job.getUrl();
+		return state.getJob().getUrl();
+	}
+
+	/**
+	 * @return "improving", "worsening" or "steady", comparing the last two
+	 *         finished builds.
+	 */
+	public String getTrend() {
+		return state.getTrend();
+	}
+
+	/**
+	 * @return the job's build health, computed once per build.
+	 */
+	public HealthReport getBuildHealth() {
+		return state.getBuildHealth();
+	}
+
+	/**
+	 * @return how long the job has been failing, its mean time to recovery
+	 *         and how often it failed, kept up to date as builds finish.
+	 */
+	public RecoveryStats getRecovery() {
+		return RecoveryStats.of(state.getJob());
 	}
 
 	public String getLastBuildUrl() {
-		Run lastBuild = job.getLastBuild();
-		if (lastBuild == null) {
-			return job.getUrl();
-		}
-		return lastBuild.getUrl();
+		return state.getLastBuildUrl();
 	}
 
 	/**
 	 * @return a list will all the currently building runs for this job.
 	 */
 	public List<Run<?, ?>> getBuildsInProgress() {
-		List<Run<?, ?>> runs = new ArrayList<Run<?, ?>>();
-
-		Run<?, ?> run = this.job.getLastBuild();
-		if (run != null) {
-			if (run.isBuilding()) {
-				runs.add(run);
-			}
+		return state.getBuildsInProgress();
+	}
 
-			Run<?, ?> prev = run.getPreviousBuildInProgress();
-			while (prev != null) {
-				runs.add(prev);
-				prev = prev.getPreviousBuildInProgress();
-			}
-		}
+	/**
+	 * @return the progress of the builds in progress.
+	 */
+	public List<BuildProgress> getProgress() {
+		return state.getProgress();
+	}
 
-		return runs;
+	/**
+	 * @return milliseconds until the first of the builds in progress is
+	 *         expected to finish, or -1 if not building or unknown.
+	 */
+	public long getEstimatedRemainingTime() {
+		return state.getEstimatedRemainingTime();
 	}
 
 	/*
@@ -185,13 +206,7 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getTestCount()
 	 */
 	public int getTestCount() {
-		Run<?, ?> run = this.job.getLastSuccessfulBuild();
-		if (run != null) {
-			AbstractTestResultAction<?> tests = run
-					.getAction(AbstractTestResultAction.class);
-			return tests != null ? tests.getTotalCount() : 0;
-		}
-		return 0;
+		return state.getTestCount();
 	}
 
 	/*
@@ -200,13 +215,7 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getFailCount()
 	 */
 	public int getFailCount() {
-		Run<?, ?> run = this.job.getLastSuccessfulBuild();
-		if (run != null) {
-			AbstractTestResultAction<?> tests = run
-					.getAction(AbstractTestResultAction.class);
-			return tests != null ? tests.getFailCount() : 0;
-		}
-		return 0;
+		return state.getFailCount();
 	}
 
 	/*
@@ -224,80 +233,11 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getDiff()
 	 */
 	public String getDiff() {
-		Run<?, ?> run = this.job.getLastSuccessfulBuild();
-		if (run != null) {
-			Run<?, ?> previous = this.getLastSuccessfulFrom(run);
-			if (previous != null) {
-				AbstractTestResultAction<?> tests = run
-						.getAction(AbstractTestResultAction.class);
-				AbstractTestResultAction<?> prevTests = previous
-						.getAction(AbstractTestResultAction.class);
-				if (tests != null && prevTests != null) {
-					int currentSuccess = tests.getTotalCount()
-							- tests.getFailCount();
-					int prevSuccess = prevTests.getTotalCount()
-							- prevTests.getFailCount();
-					int diff = currentSuccess - prevSuccess;
-					if (diff != 0) {
-						return Functions.getDiffString(diff);
-					} else {
-						return "";
-					}
-				}
-			}
-		}
-		return "";
-	}
-
-	/**
-	 * @param run
-	 *            a run
-	 * @return the last successful run prior to the given run
-	 */
-	private Run<?, ?> getLastSuccessfulFrom(Run<?, ?> run) {
-		Run<?, ?> previousBuild = run.getPreviousBuild();
-		while (hasPreviousBuildBuildingOrWithResultWorseThanUnstable(previousBuild)) {
-			previousBuild = previousBuild.getPreviousBuild();
-		}
-		return previousBuild;
-	}
-
-	private boolean hasPreviousBuildBuildingOrWithResultWorseThanUnstable(Run<?, ?> previousBuild) {
-		if (previousBuild != null) {
-			if (previousBuild.isBuilding()) {
-				return true;
-			}
-			final Result result = previousBuild.getResult();
-			if (result == null) {
-				return true;
-			}
-			if (result.isWorseThan(Result.UNSTABLE)) {
-				return true;
-			}
-		}
-		return false;
+		return state.getDiff();
 	}
 
 	public Collection<String> getCulprits() {
-		Run<?, ?> run = this.job.getLastBuild();
-		Set<String> culprits = new HashSet<String>();
-		while (run != null) {
-			if (run instanceof AbstractBuild<?, ?>) {
-
-				AbstractBuild<?, ?> build = (AbstractBuild<?, ?>) run;
-
-				Iterator<User> it = build.getCulprits().iterator();
-				while (it.hasNext()) {
-					culprits.add(it.next().getFullName());
-				}
-			}
-			run = run.getPreviousBuild();
-			if (run != null && Result.SUCCESS.equals(run.getResult())) {
-				// don't look for culprits in successful builds.
-				run = null;
-			}
-		}
-		return culprits;
+		return state.getCulprits();
 	}
 
 	/*
@@ -344,43 +284,6 @@ public class JobViewEntry implements IViewEntry {
 		return "";
 	}
 
-	/**
-	 * Determines some information of the current job like which colors use,
-	 * wether it's building or not or broken.
-	 */
-	private void findStatus() {
-		Result result = RadiatorUtil.getLastFinishedResult(job);
-
-		if (result.ordinal == Result.NOT_BUILT.ordinal) {
-			this.backgroundColor = getColors().getOtherBG();
-			this.color = getColors().getOtherFG();
-			this.notBuilt = true;
-		} else if (result.ordinal == Result.SUCCESS.ordinal) {
-			this.backgroundColor = getColors().getOkBG();
-			this.color = getColors().getOkFG();
-			this.stable = true;
-		} else if (result.ordinal == Result.UNSTABLE.ordinal) {
-			this.backgroundColor = getColors().getFailedBG();
-			this.color = getColors().getFailedFG();
-		} else {
-			this.backgroundColor = getColors().getBrokenBG();
-			this.color = getColors().getBrokenFG();
-			this.broken = true;
-		}
-
-		switch (this.job.getIconColor()) {
-		case BLUE_ANIME:
-		case YELLOW_ANIME:
-		case RED_ANIME:
-		case GREY_ANIME:
-		case DISABLED_ANIME:
-			this.building = true;
-			break;
-		default:
-			this.building = false;
-		}
-	}
-
 	private ViewEntryColors getColors() {
 		return radiatorView.getColors();
 	}
@@ -391,10 +294,10 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getLastCompletedBuild()
 	 */
 	public String getLastCompletedBuild() {
-		Run build = job.getLastCompletedBuild();
+		long[] build = state.getLastCompletedBuild();
 		if (build != null) {
-			return build.getTimestampString() + " ("
-					+ build.getDurationString() + ")";
+			return JobState.getTimestampString(build) + " ("
+					+ JobState.getDurationString(build) + ")";
 		}
 		return null;
 	}
@@ -405,10 +308,10 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getLastStableBuild()
 	 */
 	public String getLastStableBuild() {
-		Run build = job.getLastStableBuild();
+		long[] build = state.getLastStableBuild();
 		if (build != null) {
-			return build.getTimestampString() + " (in "
-					+ build.getDurationString() + ")";
+			return JobState.getTimestampString(build) + " (in "
+					+ JobState.getDurationString(build) + ")";
 		}
 		return null;
 	}
@@ -419,11 +322,11 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getStable()
 	 */
 	public boolean getStable() {
-		return stable;
+		return EntryState.status(state.getState()) == EntryState.SUCCESS;
 	}
 
 	public boolean isNotBuilt() {
-		return notBuilt;
+		return EntryState.status(state.getState()) == EntryState.NOT_BUILT;
 	}
 
 	/*
@@ -432,96 +335,15 @@ public class JobViewEntry implements IViewEntry {
 	 * @see hudson.model.IViewEntry#getClaim()
 	 */
 	public String getClaim() {
-		// check we have claim plugin
-		if (Jenkins.getActiveInstance().getPlugin("claim") == null) {
-			return null;
-		}
-		Run<?, ?> lastBuild = getLastCompletedRun();
-		if (lastBuild == null) {
-			return null;
-		}
-		// find the claim
-		final String claim;
-		if (lastBuild instanceof hudson.matrix.MatrixBuild) {
-			MatrixBuild matrixBuild = (hudson.matrix.MatrixBuild) lastBuild;
-			claim = buildMatrixClaimString(matrixBuild, true);
-		} else {
-			ClaimWrapper claimWrapper = ClaimWrapper.builder(lastBuild);
-			if (claimWrapper != null && claimWrapper.isClaimed()) {
-				StringBuilder sb = new StringBuilder();
-				if (claimWrapper.getReason() != null) {
-					sb.append(claimWrapper.getReason()).append(" ");
-				}
-				sb.append("(");
-				sb.append(claimWrapper.getClaimedByName());
-				sb.append(").");
-				claim = sb.toString();
-			} else {
-				claim = NOT_CLAIMED;
-			}
-		}
-		return claim;
+		return state.getClaim();
 	}
 
 	public String getUnclaimedMatrixBuilds() {
-		if (Jenkins.getActiveInstance().getPlugin("claim") == null) {
-			return "";
-		}
-		Run<?, ?> lastBuild = getLastCompletedRun();
-		if (!(lastBuild instanceof hudson.matrix.MatrixBuild)) {
-			return "";
-		}
-		MatrixBuild matrixBuild = (hudson.matrix.MatrixBuild) lastBuild;
-		return buildMatrixClaimString(matrixBuild, false);
-	}
-
-	private Run<?,?> getLastCompletedRun() {
-		Run<?, ?> run = job.getLastBuild();
-		while (run != null && run.isBuilding()) {
-			// claims can only be made against builds once they've finished,
-			// so check the previous build if currently building.
-			run = run.getPreviousBuild();
-		}
-		return run;
-	}
-
-	private String buildMatrixClaimString(MatrixBuild matrixBuild, boolean includeClaimed) {
-		StringBuilder claimed = new StringBuilder();
-		StringBuilder unclaimed = new StringBuilder();
-		for (MatrixRun combination : matrixBuild.getRuns()) {
-			if (matrixBuild.getNumber() != combination.getNumber()) {
-				continue;
-			}
-			Result result = combination.getResult();
-			if (!(Result.FAILURE.equals(result) || Result.UNSTABLE.equals(result))) {
-				continue;
-			}
-			ClaimWrapper claimWrapper = ClaimWrapper.builder(combination);
-			if (claimWrapper != null && claimWrapper.isClaimed()) {
-				claimed.append(combination.getParent().getCombination()
-						.toString());
-				claimed.append(": ");
-				if (claimWrapper.getReason() != null) {
-					claimed.append(claimWrapper.getReason()).append(" ");
-				}
-				claimed.append("(");
-				claimed.append(claimWrapper.getClaimedByName());
-				claimed.append(").<br/>");
-			} else {
-				unclaimed.append(combination.getParent().getCombination().toString());
-				unclaimed.append(": ").append(NOT_CLAIMED).append("<br/>");
-			}
-		}
-
-		String claims = unclaimed.toString();
-		if (includeClaimed) {
-			claims += claimed.toString();
-		}
-		return claims;
+		return state.getUnclaimedMatrixBuilds();
 	}
 
 	public boolean isClaimed() {
-		return !NOT_CLAIMED.equals(getClaim());
+		return !JobState.NOT_CLAIMED.equals(getClaim());
 	}
 
 	public boolean isCompletelyClaimed() {
@@ -529,17 +351,57 @@ public class JobViewEntry implements IViewEntry {
 		if (StringUtils.isEmpty(claim)) {
 			return false;
 		}
-		if (NOT_CLAIMED.equals(getClaim())) {
+		if (JobState.NOT_CLAIMED.equals(getClaim())) {
 			return false;
 		}
-		return ! claim.contains(NOT_CLAIMED);
+		return ! claim.contains(JobState.NOT_CLAIMED);
 	}
 
 	public Result getLastFinishedResult() {
-		return RadiatorUtil.getLastFinishedResult(job);
+		return state.getLastFinishedResult();
 	}
 
 	public boolean hasChildren() {
 		return false;
 	}
+
+	/**
+	 * @return what a {@link StoredViewEntry} needs to show the entry again.
+	 *         Only the values already computed for a render are written, so
+	 *         that saving a snapshot doesn't look up claims, culprits or test
+	 *         results nobody has seen.
+	 */
+	JSONObject toStoredJSON() {
+		JSONObject json = new JSONObject();
+		json.put("name", getName());
+		json.put("url", getUrl());
+		json.put("backgroundColor", getBackgroundColor());
+		json.put("color", getColor());
+		byte stored = state.getState();
+		if (state.isClaimComputed()) {
+			json.put("claim", getClaim());
+			json.put("completelyClaimed", isCompletelyClaimed());
+			if (!getStable() && isClaimed()) {
+				stored |= EntryState.CLAIMED;
+			}
+		}
+		json.put("state", stored);
+		state.putComputed(json);
+		return json;
+	}
+
+	/**
+	 * @return null, the entry being local.
+	 */
+	public String getSource() {
+		return null;
+	}
+
+	public boolean isSourceStale() {
+		return false;
+	}
+
+	public boolean isFolder() {
+		return false;
+	}
 }
@@ -16,8 +16,9 @@ import org.apache.commons.lang.Validate;
  * Details of a project to be shown on the radiator.
  */
 public class ProjectViewEntry implements IViewEntry {
-	private TreeSet<IViewEntry> jobs = new TreeSet<IViewEntry>(
-			new EntryComparator());
+	private static final EntryComparator COMPARATOR = new EntryComparator();
+
+	private TreeSet<IViewEntry> jobs = new TreeSet<IViewEntry>(COMPARATOR);
 
 	private String name;
 
@@ -27,7 +28,32 @@ public class ProjectViewEntry implements IViewEntry {
 
 	private TreeSet<IViewEntry> unstable;
 
-	private int jobsHashCode = -1;
+	private TreeSet<IViewEntry> passingWithUnstable;
+
+	private TreeSet<IViewEntry> claimed;
+
+	private TreeSet<IViewEntry> unclaimed;
+
+	private TreeSet<IViewEntry> unbuilt;
+
+	/**
+	 * Number of changes made to {@link #jobs}, and number of changes the
+	 * cached sets above were computed for. Groups are shared by the renders
+	 * of a snapshot, so the sets are computed and read under the entry's
+	 * lock.
+	 */
+	private int modCount;
+
+	private int passingAndFailingModCount = -1;
+
+	private int claimsModCount = -1;
+
+	/**
+	 * Recovery figures of the jobs, merged once per change of the jobs.
+	 */
+	private RecoveryStats recovery;
+
+	private int recoveryModCount = -1;
 
 	public ProjectViewEntry(String name) {
 		this.name = name;
@@ -37,15 +63,9 @@ public class ProjectViewEntry implements IViewEntry {
 
 	}
 
-	public TreeSet<IViewEntry> getClaimedBuilds() {
-		TreeSet<IViewEntry> failing = new TreeSet<IViewEntry>(
-				new EntryComparator());
-		for (IViewEntry job : jobs) {
-			if (job.getBroken() || job.getFailCount() > 0)
-				if (job.isCompletelyClaimed())
-					failing.add(job);
-		}
-		return failing;
+	public synchronized TreeSet<IViewEntry> getClaimedBuilds() {
+		computeClaimedAndUnclaimedJobs();
+		return claimed;
 	}
 
 	/**
@@ -57,16 +77,12 @@ public class ProjectViewEntry implements IViewEntry {
 	 * @return passing jobs (including unstable if there are jobs in failure).
 	 * @see #getFailingJobs()
 	 */
-	public TreeSet<IViewEntry> getPassingJobs() {
+	public synchronized TreeSet<IViewEntry> getPassingJobs() {
 
 		computePassingAndFailingJobs();
 
 		if (!failing.isEmpty()) {
-			TreeSet<IViewEntry> aggregate = new TreeSet<IViewEntry>(
-					new EntryComparator());
-			aggregate.addAll(unstable);
-			aggregate.addAll(completelyPassing);
-			return aggregate;
+			return passingWithUnstable;
 		}
 		return completelyPassing;
 	}
@@ -80,7 +96,7 @@ public class ProjectViewEntry implements IViewEntry {
 	 *         present).
 	 * @see #getPassingJobs()
 	 */
-	public TreeSet<IViewEntry> getFailingJobs() {
+	public synchronized TreeSet<IViewEntry> getFailingJobs() {
 		computePassingAndFailingJobs();
 
 		if (!failing.isEmpty()) {
@@ -91,16 +107,18 @@ public class ProjectViewEntry implements IViewEntry {
 
 	/**
 	 * Computes "completelyPassing" (meaning without including unstable jobs),
-	 * unstable and failing jobs sets. If the calculation has already been made,
-	 * this method does nothing.
+	 * unstable, failing and unbuilt jobs sets in a single pass. If the
+	 * calculation has already been made for the current jobs, this method
+	 * does nothing.
 	 */
 	private void computePassingAndFailingJobs() {
-		if (jobsHashCode == jobs.hashCode()) {
+		if (passingAndFailingModCount == modCount) {
 			return;
 		}
-		completelyPassing = new TreeSet<IViewEntry>(new EntryComparator());
-		failing = new TreeSet<IViewEntry>(new EntryComparator());
-		unstable = new TreeSet<IViewEntry>(new EntryComparator());
+		completelyPassing = new TreeSet<IViewEntry>(COMPARATOR);
+		failing = new TreeSet<IViewEntry>(COMPARATOR);
+		unstable = new TreeSet<IViewEntry>(COMPARATOR);
+		unbuilt = new TreeSet<IViewEntry>(COMPARATOR);
 		for (IViewEntry job : jobs) {
 			if (job.getBroken() || job.getFailCount() > 0) {
 				failing.add(job);
@@ -109,29 +127,49 @@ public class ProjectViewEntry implements IViewEntry {
 			} else {
 				completelyPassing.add(job);
 			}
+			if (job.isNotBuilt()) {
+				unbuilt.add(job);
+			}
 		}
+		passingWithUnstable = new TreeSet<IViewEntry>(COMPARATOR);
+		passingWithUnstable.addAll(unstable);
+		passingWithUnstable.addAll(completelyPassing);
+		passingAndFailingModCount = modCount;
 	}
 
-	public TreeSet<IViewEntry> getUnclaimedJobs() {
-		TreeSet<IViewEntry> unclaimed = new TreeSet<IViewEntry>(
-				new EntryComparator());
+	/**
+	 * Computes the claimed and unclaimed jobs sets, which need the claims of
+	 * every job and so are only computed when asked for.
+	 */
+	private void computeClaimedAndUnclaimedJobs() {
+		if (claimsModCount == modCount) {
+			return;
+		}
+		claimed = new TreeSet<IViewEntry>(COMPARATOR);
+		unclaimed = new TreeSet<IViewEntry>(COMPARATOR);
 		for (IViewEntry job : jobs) {
-			if (((!job.getStable()) || job.getFailCount() > 0) && !job.isNotBuilt()) {
-				if (!job.isCompletelyClaimed())
-					unclaimed.add(job);
+			boolean failingJob = job.getBroken() || job.getFailCount() > 0;
+			if (!failingJob && (job.getStable() || job.isNotBuilt())) {
+				continue;
+			}
+			boolean completelyClaimed = job.isCompletelyClaimed();
+			if (failingJob && completelyClaimed) {
+				claimed.add(job);
+			}
+			if (!job.isNotBuilt() && !completelyClaimed) {
+				unclaimed.add(job);
 			}
 		}
+		claimsModCount = modCount;
+	}
+
+	public synchronized TreeSet<IViewEntry> getUnclaimedJobs() {
+		computeClaimedAndUnclaimedJobs();
 		return unclaimed;
 	}
 
-	public TreeSet<IViewEntry> getUnbuiltJobs() {
-		TreeSet<IViewEntry> unbuilt = new TreeSet<IViewEntry>(
-				new EntryComparator());
-		for (IViewEntry job : jobs) {
-			if (job.isNotBuilt()) {
-				unbuilt.add(job);
-			}
-		}
+	public synchronized TreeSet<IViewEntry> getUnbuiltJobs() {
+		computePassingAndFailingJobs();
 		return unbuilt;
 	}
 
@@ -143,9 +181,10 @@ public class ProjectViewEntry implements IViewEntry {
 		return name;
 	}
 
-	public void addBuild(IViewEntry entry) {
+	public synchronized void addBuild(IViewEntry entry) {
 		Validate.notNull(entry);
 		jobs.add(entry);
+		modCount++;
 	}
 
 	public String getStatus() {
@@ -219,6 +258,24 @@ public class ProjectViewEntry implements IViewEntry {
 		return culprits;
 	}
 
+	/**
+	 * @return how long the group has been failing, its mean time to recovery
+	 *         and how often its jobs failed.
+	 */
+	public synchronized RecoveryStats getRecovery() {
+		if (recoveryModCount != modCount) {
+			Collection<RecoveryStats> all = new ArrayList<RecoveryStats>();
+			for (IViewEntry job : jobs) {
+				if (job instanceof JobViewEntry) {
+					all.add(((JobViewEntry) job).getRecovery());
+				}
+			}
+			recovery = RecoveryStats.merge(all);
+			recoveryModCount = modCount;
+		}
+		return recovery;
+	}
+
 	public String getCulprit() {
 		Collection<String> culprits = getCulprits();
 		String culprit = null;
@@ -316,7 +373,29 @@ public class ProjectViewEntry implements IViewEntry {
 		throw new UnsupportedOperationException();
 	}
 
+	/**
+	 * @return <code>true</code> if none of the jobs was ever built.
+	 */
 	public boolean isNotBuilt() {
-		throw new UnsupportedOperationException();
+		boolean notBuilt = !jobs.isEmpty();
+		for (IViewEntry job : jobs) {
+			notBuilt &= job.isNotBuilt();
+		}
+		return notBuilt;
+	}
+
+	/**
+	 * @return null, the entry being local.
+	 */
+	public String getSource() {
+		return null;
+	}
+
+	public boolean isSourceStale() {
+		return false;
+	}
+
+	public boolean isFolder() {
+		return false;
 	}
 }
@@ -0,0 +1,156 @@
+package hudson.model;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.listeners.RunListener;
+import hudson.security.ACL;
+import hudson.util.AtomicFileWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+/**
+ * Writes the snapshots of views which have an export directory to it, as
+ * <code>radiator.json</code> and a self-contained <code>index.html</code>, so
+ * that displays can be served by any web server without loading Jenkins.
+ * Files are replaced atomically, and only when the snapshot's version
+ * changes. Build events get the snapshot of such views recomputed, so the
+ * files are kept up to date even when nobody looks at the view in Jenkins.
+ */
+final class RadiatorExporter {
+
+	private static final Logger LOGGER = Logger.getLogger(RadiatorExporter.class.getName());
+
+	private RadiatorExporter() {
+	}
+
+	/**
+	 * Writes the snapshot of the view to the directory.
+	 */
+	static void export(RadiatorView view, RadiatorSnapshot snapshot, File dir) {
+		try {
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Failed to create " + dir);
+			}
+			write(new File(dir, "radiator.json"), snapshot.toJSON().toString());
+			write(new File(dir, "index.html"), toHtml(view, snapshot));
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to export the radiator " + view.getViewName() + " to " + dir, e);
+		} catch (RuntimeException e) {
+			// the entries are read from live jobs, which may have gone.
+			LOGGER.log(Level.WARNING, "Failed to export the radiator " + view.getViewName() + " to " + dir, e);
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		AtomicFileWriter w = new AtomicFileWriter(file, "UTF-8");
+		try {
+			w.write(content);
+			w.commit();
+		} finally {
+			w.abort();
+		}
+	}
+
+	/**
+	 * @return a page showing the snapshot as tiles, failing entries first,
+	 *         which reloads itself to pick up the next export.
+	 */
+	static String toHtml(RadiatorView view, RadiatorSnapshot snapshot) {
+		String rootUrl = Jenkins.getActiveInstance().getRootUrl();
+		StringBuilder html = new StringBuilder();
+		html.append("<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\">");
+		html.append("<meta http-equiv=\"refresh\" content=\"").append(snapshot.getRefresh()).append("\">");
+		html.append("<title>").append(Util.escape(view.getViewName())).append("</title>");
+		html.append("<style>body{margin:0;font-family:sans-serif;background:#000;display:flex;flex-wrap:wrap}");
+		html.append(".job{flex:1 1 20em;margin:2px;padding:0.5em;overflow:hidden}");
+		html.append(".failing{flex-basis:40em;font-size:x-large}.job a{color:inherit;font-weight:bold}");
+		html.append("footer{width:100%;color:#888;font-size:x-small;padding:2px}</style></head><body>\n");
+		appendEntries(html, snapshot.getFailingJobs(), "failing", rootUrl);
+		appendEntries(html, snapshot.getPassingJobs(), "passing", rootUrl);
+		html.append("<footer>Version ").append(snapshot.getVersion()).append(", ")
+				.append(Util.escape(new Date(snapshot.getTimestamp()).toString())).append("</footer>\n");
+		html.append("</body></html>\n");
+		return html.toString();
+	}
+
+	private static void appendEntries(StringBuilder html, List<IViewEntry> entries, String clazz, String rootUrl) {
+		for (IViewEntry entry : entries) {
+			html.append("<div class=\"job ").append(clazz).append("\" style=\"background-color:")
+					.append(Util.escape(entry.getBackgroundColor())).append(";color:")
+					.append(Util.escape(entry.getColor())).append("\">");
+			String url = entry.getUrl();
+			// remote entries have absolute URLs.
+			if (url != null && entry.getSource() == null) {
+				url = rootUrl != null ? rootUrl + url : null;
+			}
+			if (url != null) {
+				html.append("<a href=\"").append(Util.escape(url)).append("\">")
+						.append(Util.escape(entry.getName())).append("</a>");
+			} else {
+				html.append("<b>").append(Util.escape(entry.getName())).append("</b>");
+			}
+			html.append("<p>").append(Util.escape(entry.getStatus()));
+			if (entry.getBuilding()) {
+				html.append(", building");
+			}
+			html.append("</p>");
+			if (!entry.getStable() && !entry.hasChildren()) {
+				String culprit = entry.getCulprit();
+				if (culprit != null && !" - ".equals(culprit)) {
+					html.append("<p>Possible culprit: ").append(Util.escape(culprit)).append("</p>");
+				}
+				if (entry.isClaimed() && entry.getClaim() != null) {
+					html.append("<p>").append(Util.escape(entry.getClaim())).append("</p>");
+				}
+			}
+			html.append("</div>\n");
+		}
+	}
+
+	/**
+	 * Gets the views with an export directory to export their new state once
+	 * the next snapshot period starts, as builds start and finish.
+	 */
+	@Extension
+	public static final class RunListenerImpl extends RunListener<Run> {
+
+		@Override
+		public void onStarted(Run run, TaskListener listener) {
+			scheduleExports();
+		}
+
+		@Override
+		public void onFinalized(Run run) {
+			scheduleExports();
+		}
+
+		private static void scheduleExports() {
+			// views are looked up off the build's thread.
+			Timer.get().submit(new Runnable() {
+				public void run() {
+					SecurityContext previous = ACL.impersonate(ACL.SYSTEM);
+					try {
+						for (RadiatorView view : RadiatorUtil.getAllRadiatorViews()) {
+							if (view.getExportDirectory() != null) {
+								view.scheduleExport();
+							}
+						}
+					} finally {
+						SecurityContextHolder.setContext(previous);
+					}
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package hudson.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A fixed-layout binary form of a {@link RadiatorSnapshot}, for devices too
+ * small to read the radiator's page or JSON, such as LED strips. It is built
+ * once per snapshot and served as is to every device polling the view's
+ * <code>radiatorFeed</code> URL.
+ * <p>
+ * Every payload starts with a 24 byte big-endian header:
+ * <ul>
+ * <li>0: <code>'R' 'V'</code></li>
+ * <li>2: format, 1</li>
+ * <li>3: flags, 1 if the payload is a delta, 2 if the snapshot is stale</li>
+ * <li>4: snapshot version (unsigned 32 bits)</li>
+ * <li>8: version the delta is from, 0 for full payloads (unsigned 32 bits)</li>
+ * <li>12: hash of the entry names, which changes when entries are added,
+ * removed or renamed (16 bits)</li>
+ * <li>14, 16, 18, 20: number of failing, unstable, claimed and building
+ * entries (unsigned 16 bits each)</li>
+ * <li>22: number of entries, or of changed entries for deltas (unsigned 16
+ * bits)</li>
+ * </ul>
+ * Full payloads then hold one {@link EntryState} byte per entry, entries
+ * being sorted by name, as listed by <code>radiatorFeed?names</code>. The
+ * entries are every job the view shows, groups being split into their jobs,
+ * and passing jobs being kept while the page only shows failing ones. Deltas
+ * hold the index and new state byte of each entry which changed, 3 bytes
+ * each.
+ */
+final class RadiatorFeed {
+
+	static final int HEADER_SIZE = 24;
+
+	private static final int MAX_ENTRIES = 0xFFFF;
+
+	private final long version;
+
+	private final boolean stale;
+
+	private final String[] names;
+
+	private final byte[] states;
+
+	private final int namesHash;
+
+	private final int failing;
+
+	private final int unstable;
+
+	private final int claimed;
+
+	private final int building;
+
+	private final byte[] full;
+
+	private RadiatorFeed(RadiatorSnapshot snapshot) {
+		this.version = snapshot.getVersion();
+		this.stale = snapshot.isStale();
+		List<IViewEntry> sorted = snapshot.getAllJobs();
+		int count = Math.min(sorted.size(), MAX_ENTRIES);
+		this.names = new String[count];
+		this.states = new byte[count];
+		int failing = 0;
+		int unstable = 0;
+		int claimed = 0;
+		int building = 0;
+		for (int i = 0; i < count; i++) {
+			names[i] = sorted.get(i).getName();
+			byte state = EntryState.of(sorted.get(i));
+			states[i] = state;
+			int status = EntryState.status(state);
+			if (status == EntryState.BROKEN) {
+				failing++;
+			} else if (status == EntryState.UNSTABLE) {
+				unstable++;
+			}
+			if (EntryState.isClaimed(state)) {
+				claimed++;
+			}
+			if (EntryState.isBuilding(state)) {
+				building++;
+			}
+		}
+		this.failing = failing;
+		this.unstable = unstable;
+		this.claimed = claimed;
+		this.building = building;
+		this.namesHash = Arrays.hashCode(names) & 0xFFFF;
+		ByteBuffer buffer = header(0, count, 0);
+		buffer.put(states);
+		this.full = buffer.array();
+	}
+
+	static RadiatorFeed of(RadiatorSnapshot snapshot) {
+		return new RadiatorFeed(snapshot);
+	}
+
+	/**
+	 * @return the state of every entry.
+	 */
+	byte[] getFull() {
+		return full;
+	}
+
+	/**
+	 * @param base
+	 *            the feed of an earlier snapshot.
+	 * @return the entries whose state changed since the earlier snapshot, or
+	 *         null if entries were added, removed or renamed since.
+	 */
+	byte[] getDelta(RadiatorFeed base) {
+		if (!Arrays.equals(names, base.names)) {
+			return null;
+		}
+		int changes = 0;
+		for (int i = 0; i < states.length; i++) {
+			if (states[i] != base.states[i]) {
+				changes++;
+			}
+		}
+		ByteBuffer buffer = header(1, changes, base.version);
+		for (int i = 0; i < states.length; i++) {
+			if (states[i] != base.states[i]) {
+				buffer.putShort((short) i);
+				buffer.put(states[i]);
+			}
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * @return the names of the entries, one per line, in feed order.
+	 */
+	String getNames() {
+		StringBuilder text = new StringBuilder();
+		for (String name : names) {
+			text.append(name).append('\n');
+		}
+		return text.toString();
+	}
+
+	private ByteBuffer header(int delta, int count, long from) {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (delta == 1 ? 3 * count : count));
+		buffer.put((byte) 'R');
+		buffer.put((byte) 'V');
+		buffer.put((byte) 1);
+		buffer.put((byte) (delta | (stale ? 2 : 0)));
+		buffer.putInt((int) version);
+		buffer.putInt((int) from);
+		buffer.putShort((short) namesHash);
+		buffer.putShort((short) Math.min(failing, MAX_ENTRIES));
+		buffer.putShort((short) Math.min(unstable, MAX_ENTRIES));
+		buffer.putShort((short) Math.min(claimed, MAX_ENTRIES));
+		buffer.putShort((short) Math.min(building, MAX_ENTRIES));
+		buffer.putShort((short) count);
+		return buffer;
+	}
+}
@@ -0,0 +1,591 @@
+package hudson.model;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.matrix.MatrixConfiguration;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import net.sf.json.JSONObject;
+
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+/**
+ * An append-only log of the changes of state of the entries of a
+ * {@link RadiatorView}, from which the radiator can be shown as it was at any
+ * time, without reading build records.
+ * <p>
+ * The log is kept under <code>$JENKINS_HOME/radiatorview/history</code>, in
+ * files named after the time they were started. Each file starts with the
+ * names of the entries and a checkpoint of their state, so it can be read on
+ * its own, followed by a record per transition: its time, the entry, and its
+ * {@link EntryState} before and after, including whether it is claimed. A new
+ * file is started once the current one reaches
+ * <code>hudson.model.RadiatorHistoryLog.fileSize</code> bytes (1MB by
+ * default), and only the latest <code>files</code> (16 by default) are kept.
+ * Files are read through memory mapping.
+ * <p>
+ * Transitions are recorded by listeners as they happen, at the time of the
+ * build or claim causing them, whether anyone looks at the radiator or not.
+ * Snapshots of the view only start the log and record the entries it starts
+ * or stops showing.
+ */
+final class RadiatorHistoryLog {
+
+	private static final Logger LOGGER = Logger.getLogger(RadiatorHistoryLog.class.getName());
+
+	/**
+	 * Logs which were started, by directory.
+	 */
+	private static final ConcurrentMap<File, RadiatorHistoryLog> LOGS = new ConcurrentHashMap<File, RadiatorHistoryLog>();
+
+	static final long FILE_SIZE = Long.getLong(RadiatorHistoryLog.class.getName() + ".fileSize", 1024 * 1024);
+
+	static final int FILES = Math.max(1, Integer.getInteger(RadiatorHistoryLog.class.getName() + ".files", 16));
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String PREFIX = "history-";
+
+	private static final String SUFFIX = ".log";
+
+	/**
+	 * Record types.
+	 */
+	private static final byte NAME = 1;
+
+	private static final byte CHECKPOINT = 2;
+
+	private static final byte TRANSITION = 3;
+
+	/**
+	 * State of entries which aren't shown by the view.
+	 */
+	private static final byte ABSENT = -1;
+
+	private final RadiatorView view;
+
+	private final File dir;
+
+	/**
+	 * State of the entries as last recorded, by name.
+	 */
+	private final Map<String, Byte> states = new HashMap<String, Byte>();
+
+	/**
+	 * Ids of the entries in the current file, by name.
+	 */
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+	private DataOutputStream out;
+
+	private long written;
+
+	/**
+	 * When the current file was started.
+	 */
+	private long started;
+
+	RadiatorHistoryLog(RadiatorView view) {
+		this.view = view;
+		String url = view.getUrl();
+		if (url.endsWith("/")) {
+			url = url.substring(0, url.length() - 1);
+		}
+		this.dir = new File(new File(Jenkins.getActiveInstance().getRootDir(), "radiatorview/history"),
+				url.replace('/', '_'));
+	}
+
+	/**
+	 * Starts the log from the state of the entries, or records the entries
+	 * the view started or stopped showing since. The state of the entries
+	 * already in the log is only changed by listeners.
+	 *
+	 * @param timestamp
+	 *            when the entries were in this state.
+	 * @param entries
+	 *            every entry of the view, not grouped.
+	 */
+	synchronized void update(long timestamp, Collection<IViewEntry> entries) {
+		Map<String, Byte> current = new HashMap<String, Byte>();
+		for (IViewEntry entry : entries) {
+			current.put(entry.getName(), EntryState.of(entry));
+		}
+		try {
+			if (out == null) {
+				// the first file starts from the current state.
+				states.clear();
+				states.putAll(current);
+				startFile(timestamp);
+				LOGS.put(dir, this);
+				return;
+			}
+			for (Map.Entry<String, Byte> entry : current.entrySet()) {
+				if (!states.containsKey(entry.getKey())) {
+					write(timestamp, entry.getKey(), entry.getValue());
+				}
+			}
+			for (String name : new ArrayList<String>(states.keySet())) {
+				if (!current.containsKey(name)) {
+					write(timestamp, name, ABSENT);
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Records a build of an entry starting.
+	 */
+	private synchronized void started(String name, long timestamp) {
+		Byte previous = states.get(name);
+		if (previous != null) {
+			record(timestamp, name, (byte) (previous | EntryState.BUILDING));
+		}
+	}
+
+	/**
+	 * Records a build of an entry finishing. Aborted builds keep the status
+	 * of the build before them, and other builds have yet to be claimed.
+	 */
+	private synchronized void finished(String name, long timestamp, Result result, boolean building) {
+		Byte previous = states.get(name);
+		if (previous == null) {
+			return;
+		}
+		int state;
+		if (result == null || result == Result.ABORTED) {
+			state = previous & ~EntryState.BUILDING;
+		} else {
+			state = EntryState.of(result, false);
+		}
+		record(timestamp, name, (byte) (building ? state | EntryState.BUILDING : state));
+	}
+
+	/**
+	 * Records the new state of an entry, if the log shows it.
+	 */
+	private synchronized void entryChanged(String name, long timestamp, byte state) {
+		if (states.containsKey(name)) {
+			record(timestamp, name, state);
+		}
+	}
+
+	private synchronized boolean shows(String name) {
+		return states.containsKey(name);
+	}
+
+	private void record(long timestamp, String name, byte state) {
+		if (out == null) {
+			// failed, until the next snapshot starts it again.
+			return;
+		}
+		try {
+			write(timestamp, name, state);
+			out.flush();
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Writes the transition of an entry, if its state changed, starting a new
+	 * file from the state of the entries once the current one is full.
+	 */
+	private void write(long timestamp, String name, byte state) throws IOException {
+		Byte previous = states.get(name);
+		if (previous == null ? state == ABSENT : previous.byteValue() == state) {
+			return;
+		}
+		if (written >= FILE_SIZE) {
+			startFile(timestamp);
+		}
+		transition(timestamp, name, previous == null ? ABSENT : previous, state);
+		if (state == ABSENT) {
+			states.remove(name);
+		} else {
+			states.put(name, state);
+		}
+	}
+
+	private void fail(IOException e) {
+		LOGGER.log(Level.WARNING, "Failed to record the history in " + dir, e);
+		close();
+		LOGS.remove(dir, this);
+	}
+
+	private void startFile(long timestamp) throws IOException {
+		close();
+		// builds may finish out of order, but files must not.
+		timestamp = Math.max(timestamp, started + 1);
+		started = timestamp;
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Failed to create " + dir);
+		}
+		File file = new File(dir, PREFIX + timestamp + SUFFIX);
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+		written = 0;
+		ids.clear();
+		for (String name : states.keySet()) {
+			id(name);
+		}
+		out.writeByte(CHECKPOINT);
+		out.writeLong(timestamp);
+		out.writeInt(states.size());
+		for (Map.Entry<String, Byte> entry : states.entrySet()) {
+			out.writeInt(ids.get(entry.getKey()));
+			out.writeByte(entry.getValue());
+		}
+		written += 13 + 5 * states.size();
+		out.flush();
+		deleteOldFiles();
+	}
+
+	private int id(String name) throws IOException {
+		Integer id = ids.get(name);
+		if (id == null) {
+			id = ids.size();
+			ids.put(name, id);
+			byte[] bytes = name.getBytes(UTF8);
+			out.writeByte(NAME);
+			out.writeInt(id);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			written += 9 + bytes.length;
+		}
+		return id;
+	}
+
+	private void transition(long timestamp, String name, byte from, byte to) throws IOException {
+		int id = id(name);
+		out.writeByte(TRANSITION);
+		out.writeLong(timestamp);
+		out.writeInt(id);
+		out.writeByte(from);
+		out.writeByte(to);
+		written += 15;
+	}
+
+	private void deleteOldFiles() {
+		File[] files = listFiles();
+		for (int i = 0; i < files.length - FILES; i++) {
+			if (!files[i].delete()) {
+				LOGGER.log(Level.FINE, "Failed to delete {0}", files[i]);
+			}
+		}
+	}
+
+	private void close() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.FINE, "Failed to close the history in " + dir, e);
+			}
+			out = null;
+		}
+	}
+
+	/**
+	 * @return the files of the log, oldest first.
+	 */
+	private File[] listFiles() {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return new File[0];
+		}
+		List<File> logs = new ArrayList<File>();
+		for (File file : files) {
+			if (startOf(file) >= 0) {
+				logs.add(file);
+			}
+		}
+		File[] sorted = logs.toArray(new File[logs.size()]);
+		Arrays.sort(sorted, new Comparator<File>() {
+			public int compare(File a, File b) {
+				long x = startOf(a);
+				long y = startOf(b);
+				return x < y ? -1 : x == y ? 0 : 1;
+			}
+		});
+		return sorted;
+	}
+
+	private static long startOf(File file) {
+		String name = file.getName();
+		if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Reads the state of the entries at the given time, from the latest file
+	 * started before it.
+	 *
+	 * @return the state of the entries shown at that time, by name, or null
+	 *         if the log doesn't go back that far.
+	 */
+	Map<String, Byte> replay(long at) throws IOException {
+		File from = null;
+		for (File file : listFiles()) {
+			if (startOf(file) <= at) {
+				from = file;
+			}
+		}
+		if (from == null) {
+			return null;
+		}
+		Map<Integer, String> names = new HashMap<Integer, String>();
+		Map<String, Byte> result = new HashMap<String, Byte>();
+		RandomAccessFile raf = new RandomAccessFile(from, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			try {
+				while (buffer.hasRemaining()) {
+					byte type = buffer.get();
+					if (type == NAME) {
+						int id = buffer.getInt();
+						byte[] bytes = new byte[buffer.getInt()];
+						buffer.get(bytes);
+						names.put(id, new String(bytes, UTF8));
+					} else if (type == CHECKPOINT) {
+						buffer.getLong();
+						result.clear();
+						for (int count = buffer.getInt(); count > 0; count--) {
+							set(result, names.get(buffer.getInt()), buffer.get());
+						}
+					} else if (type == TRANSITION) {
+						// builds finishing at once may be recorded out of order.
+						boolean after = buffer.getLong() > at;
+						String name = names.get(buffer.getInt());
+						buffer.get();
+						byte state = buffer.get();
+						if (!after) {
+							set(result, name, state);
+						}
+					} else {
+						throw new IOException("Corrupted history in " + from);
+					}
+				}
+			} catch (BufferUnderflowException e) {
+				// the last record is still being written.
+			}
+		} finally {
+			raf.close();
+		}
+		return result;
+	}
+
+	private static void set(Map<String, Byte> states, String name, byte state) {
+		if (name == null) {
+			return;
+		}
+		if (state == ABSENT) {
+			states.remove(name);
+		} else {
+			states.put(name, state);
+		}
+	}
+
+	/**
+	 * @return the started logs of the views still keeping their history.
+	 */
+	private static List<RadiatorHistoryLog> getLogs() {
+		List<RadiatorHistoryLog> logs = new ArrayList<RadiatorHistoryLog>();
+		for (RadiatorHistoryLog log : LOGS.values()) {
+			RadiatorView view = log.view;
+			if (Boolean.TRUE.equals(view.keepHistory) && view.getOwner().getViews().contains(view)) {
+				logs.add(log);
+			} else {
+				LOGS.remove(log.dir, log);
+			}
+		}
+		return logs;
+	}
+
+	/**
+	 * Records the new state of an entry, such as a collapsed folder, in the
+	 * logs showing it.
+	 */
+	static void changed(String name, long timestamp, byte state) {
+		for (RadiatorHistoryLog log : getLogs()) {
+			log.entryChanged(name, timestamp, state);
+		}
+	}
+
+	/**
+	 * Starts the logs of the views keeping their history once the jobs are
+	 * loaded, so that changes are recorded before anyone looks at them.
+	 */
+	@Initializer(after = InitMilestone.JOB_LOADED)
+	public static void startLogs() {
+		Timer.get().submit(new Runnable() {
+			public void run() {
+				SecurityContext previous = ACL.impersonate(ACL.SYSTEM);
+				try {
+					for (RadiatorView view : RadiatorUtil.getAllRadiatorViews()) {
+						if (Boolean.TRUE.equals(view.keepHistory)) {
+							view.getSnapshot();
+						}
+					}
+				} finally {
+					SecurityContextHolder.setContext(previous);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Records builds starting and finishing, at the time they did.
+	 */
+	@Extension
+	public static final class RunListenerImpl extends RunListener<Run> {
+
+		@Override
+		public void onStarted(Run run, TaskListener listener) {
+			String name = run.getParent().getFullName();
+			for (RadiatorHistoryLog log : getLogs()) {
+				log.started(name, run.getStartTimeInMillis());
+			}
+		}
+
+		@Override
+		public void onFinalized(Run run) {
+			String name = run.getParent().getFullName();
+			long finished = run.getStartTimeInMillis() + run.getDuration();
+			boolean building = run.getParent().isBuilding();
+			for (RadiatorHistoryLog log : getLogs()) {
+				log.finished(name, finished, run.getResult(), building);
+			}
+		}
+	}
+
+	/**
+	 * Records claims as the builds holding them are saved.
+	 */
+	@Extension
+	public static final class SaveableListenerImpl extends SaveableListener {
+
+		@Override
+		public void onChange(Saveable o, XmlFile file) {
+			if (!(o instanceof Run) || ((Run<?, ?>) o).isBuilding()) {
+				return;
+			}
+			Job<?, ?> job = ((Run<?, ?>) o).getParent();
+			if (job instanceof MatrixConfiguration) {
+				job = ((MatrixConfiguration) job).getParent();
+			}
+			String name = job.getFullName();
+			byte state = 0;
+			boolean computed = false;
+			long now = System.currentTimeMillis();
+			for (RadiatorHistoryLog log : getLogs()) {
+				if (!log.shows(name)) {
+					continue;
+				}
+				if (!computed) {
+					// the cached state may not have been dropped yet.
+					state = EntryState.of(new JobViewEntry(log.view, new JobState(job)));
+					computed = true;
+				}
+				log.entryChanged(name, now, state);
+			}
+		}
+	}
+
+	/**
+	 * Records jobs which are deleted or moved as no longer shown.
+	 */
+	@Extension
+	public static final class ItemListenerImpl extends ItemListener {
+
+		@Override
+		public void onDeleted(Item item) {
+			changed(item.getFullName(), System.currentTimeMillis(), ABSENT);
+		}
+
+		@Override
+		public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+			changed(oldFullName, System.currentTimeMillis(), ABSENT);
+		}
+	}
+
+	/**
+	 * @param view
+	 *            the view the entries were shown by.
+	 * @param states
+	 *            the state of the entries, as returned by {@link #replay(long)}.
+	 * @return the radiator as it was, without looking at any build.
+	 */
+	static ProjectViewEntry toContents(RadiatorView view, Map<String, Byte> states) {
+		ViewEntryColors colors = view.getColors();
+		Jenkins jenkins = Jenkins.getActiveInstance();
+		ProjectViewEntry content = new ProjectViewEntry();
+		for (Map.Entry<String, Byte> entry : states.entrySet()) {
+			byte state = entry.getValue();
+			int status = EntryState.status(state);
+			JSONObject json = new JSONObject();
+			json.put("name", entry.getKey());
+			Item item = jenkins.getItemByFullName(entry.getKey());
+			if (item != null) {
+				json.put("url", item.getUrl());
+			}
+			if (status == EntryState.NOT_BUILT) {
+				json.put("status", "never built");
+			} else if (status == EntryState.SUCCESS) {
+				json.put("status", "successful");
+			} else if (EntryState.isClaimed(state)) {
+				json.put("status", "claimed");
+			} else {
+				json.put("status", status == EntryState.BROKEN ? "failing" : "unstable");
+			}
+			json.put("backgroundColor", colors.getBackground(status));
+			json.put("color", colors.getForeground(status));
+			json.put("broken", status == EntryState.BROKEN);
+			json.put("stable", status == EntryState.SUCCESS);
+			json.put("notBuilt", status == EntryState.NOT_BUILT);
+			json.put("building", EntryState.isBuilding(state));
+			json.put("claimed", EntryState.isClaimed(state));
+			json.put("completelyClaimed", EntryState.isClaimed(state));
+			content.addBuild(new StoredViewEntry(json));
+		}
+		return content;
+	}
+}
@@ -0,0 +1,271 @@
+package hudson.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Final position of every tile of a {@link RadiatorSnapshot}, as percentages
+ * of the dashboard. A layout is computed in a single pass over the entries and
+ * only depends on their order, their status and the screen's aspect ratio, so
+ * it can be reused for as long as the snapshot's version doesn't change.
+ */
+public final class RadiatorLayout {
+
+	/**
+	 * Preferred width/height ratio of tiles in each section.
+	 */
+	private static final double FAILING_TILE_RATIO = 2;
+
+	private static final double PASSING_TILE_RATIO = 3;
+
+	/**
+	 * Relative area given to failing, unstable and other entries in treemap
+	 * layouts.
+	 */
+	private static final double FAILING_WEIGHT = 4;
+
+	private static final double UNSTABLE_WEIGHT = 2;
+
+	private static final double OTHER_WEIGHT = 1;
+
+	private final int failingCount;
+
+	private final String[] styles;
+
+	private RadiatorLayout(int failingCount, String[] styles) {
+		this.failingCount = failingCount;
+		this.styles = styles;
+	}
+
+	/**
+	 * @return the number of tiles in this layout.
+	 */
+	public int size() {
+		return styles.length;
+	}
+
+	/**
+	 * Binds the layout to the entries of a snapshot with the same version as
+	 * the one it was computed for.
+	 *
+	 * @param snapshot
+	 *            the snapshot to render.
+	 * @return a slot for each of the snapshot's entries, in display order.
+	 */
+	public List<Slot> getSlots(RadiatorSnapshot snapshot) {
+		List<IViewEntry> jobs = snapshot.getJobs();
+		int count = Math.min(jobs.size(), styles.length);
+		List<Slot> slots = new ArrayList<Slot>(count);
+		for (int i = 0; i < count; i++) {
+			slots.add(new Slot(jobs.get(i), styles[i], i < failingCount));
+		}
+		return slots;
+	}
+
+	/**
+	 * Lays failing entries out in rows on top, and passing ones in smaller
+	 * rows below.
+	 *
+	 * @param snapshot
+	 *            the entries to lay out.
+	 * @param failingHeight
+	 *            percentage of the height given to failing entries.
+	 * @param aspectRatio
+	 *            width/height ratio of the screen.
+	 * @return the layout.
+	 */
+	static RadiatorLayout grid(RadiatorSnapshot snapshot, double failingHeight, double aspectRatio) {
+		int failing = snapshot.getFailingJobs().size();
+		int passing = snapshot.getPassingJobs().size();
+		if (failing == 0) {
+			failingHeight = 0;
+		} else if (passing == 0) {
+			failingHeight = 100;
+		}
+		String[] styles = new String[failing + passing];
+		fillRows(styles, 0, failing, 0, failingHeight, aspectRatio, FAILING_TILE_RATIO, 2);
+		fillRows(styles, failing, passing, failingHeight, 100 - failingHeight, aspectRatio,
+				PASSING_TILE_RATIO, 0.4);
+		return new RadiatorLayout(failing, styles);
+	}
+
+	/**
+	 * Lays every entry out in equally sized rows, all of them shown in the
+	 * same way.
+	 *
+	 * @param snapshot
+	 *            the entries to lay out.
+	 * @param aspectRatio
+	 *            width/height ratio of the screen.
+	 * @return the layout.
+	 */
+	static RadiatorLayout uniform(RadiatorSnapshot snapshot, double aspectRatio) {
+		int count = snapshot.getFailingJobs().size() + snapshot.getPassingJobs().size();
+		String[] styles = new String[count];
+		int columns = columns(count, aspectRatio, FAILING_TILE_RATIO);
+		int rows = (count + columns - 1) / columns;
+		for (int i = 0; i < count; i++) {
+			int row = i / columns;
+			int inRow = Math.min(columns, count - row * columns);
+			double width = 100.0 / inRow;
+			double height = 100.0 / rows;
+			styles[i] = String.format(Locale.ROOT,
+					"left: %.2f%%; top:%.2f%%; width:%.2f%%; height:%.2f%%; margin:1%%; ",
+					(i % columns) * width, row * height, width - 2, height - 2);
+		}
+		return new RadiatorLayout(count, styles);
+	}
+
+	/**
+	 * Lays the entries out as a treemap, in which failing and unstable entries
+	 * get proportionally more area than the others. Entries are packed in
+	 * horizontal strips, each strip being closed as soon as adding an entry
+	 * would make its tiles less square.
+	 *
+	 * @param snapshot
+	 *            the entries to lay out.
+	 * @param aspectRatio
+	 *            width/height ratio of the screen.
+	 * @return the layout.
+	 */
+	static RadiatorLayout treemap(RadiatorSnapshot snapshot, double aspectRatio) {
+		List<IViewEntry> jobs = snapshot.getJobs();
+		int count = jobs.size();
+		double[] weights = new double[count];
+		double total = 0;
+		for (int i = 0; i < count; i++) {
+			weights[i] = weight(jobs.get(i));
+			total += weights[i];
+		}
+
+		// work in screen units where the dashboard is aspectRatio x 1.
+		String[] styles = new String[count];
+		double scale = aspectRatio / total;
+		double top = 0;
+		int start = 0;
+		while (start < count) {
+			double rowWeight = weights[start];
+			double best = worstRatio(rowWeight, weights[start], weights[start], scale, aspectRatio);
+			int end = start + 1;
+			double min = weights[start];
+			double max = weights[start];
+			while (end < count) {
+				double candidate = worstRatio(rowWeight + weights[end], Math.min(min, weights[end]),
+						Math.max(max, weights[end]), scale, aspectRatio);
+				if (candidate > best) {
+					break;
+				}
+				best = candidate;
+				rowWeight += weights[end];
+				min = Math.min(min, weights[end]);
+				max = Math.max(max, weights[end]);
+				end++;
+			}
+			double height = rowWeight * scale / aspectRatio;
+			double left = 0;
+			for (int i = start; i < end; i++) {
+				double width = weights[i] / rowWeight;
+				styles[i] = style(left * 100, top * 100, width * 100, height * 100,
+						i < snapshot.getFailingJobs().size() ? 2 : 0.4);
+				left += width;
+			}
+			top += height;
+			start = end;
+		}
+		return new RadiatorLayout(snapshot.getFailingJobs().size(), styles);
+	}
+
+	/**
+	 * @return the worst width/height (or height/width) ratio of the tiles of
+	 *         a strip spanning the whole width.
+	 */
+	private static double worstRatio(double rowWeight, double min, double max, double scale,
+			double width) {
+		double height = rowWeight * scale / width;
+		double narrowest = min * scale / height;
+		double widest = max * scale / height;
+		return Math.max(Math.max(height / narrowest, narrowest / height),
+				Math.max(height / widest, widest / height));
+	}
+
+	private static double weight(IViewEntry entry) {
+		if (entry.getBroken()) {
+			return FAILING_WEIGHT;
+		}
+		if (!entry.getStable()) {
+			return UNSTABLE_WEIGHT;
+		}
+		return OTHER_WEIGHT;
+	}
+
+	private static void fillRows(String[] styles, int offset, int count, double top,
+			double height, double aspectRatio, double tileRatio, double heightInset) {
+		if (count == 0) {
+			return;
+		}
+		double sectionRatio = aspectRatio * 100 / Math.max(height, 1);
+		int columns = columns(count, sectionRatio, tileRatio);
+		int rows = (count + columns - 1) / columns;
+		double rowHeight = height / rows;
+		for (int i = 0; i < count; i++) {
+			int row = i / columns;
+			int inRow = Math.min(columns, count - row * columns);
+			double width = 100.0 / inRow;
+			styles[offset + i] = style((i % columns) * width, top + row * rowHeight, width,
+					rowHeight, heightInset);
+		}
+	}
+
+	/**
+	 * @return the number of columns giving tiles closest to the preferred
+	 *         ratio in an area of the given ratio.
+	 */
+	private static int columns(int count, double areaRatio, double tileRatio) {
+		int columns = (int) Math.round(Math.sqrt(count * areaRatio / tileRatio));
+		return Math.max(1, Math.min(count, columns));
+	}
+
+	private static String style(double left, double top, double width, double height,
+			double heightInset) {
+		return String.format(Locale.ROOT,
+				"left: %.2f%%; top:%.2f%%; width:%.2f%%; height:%.2f%%; margin:.2%%; padding-left: 1%%;",
+				left, top, width - 1.4, height - heightInset);
+	}
+
+	/**
+	 * A tile's entry and position.
+	 */
+	public static final class Slot {
+
+		private final IViewEntry entry;
+
+		private final String style;
+
+		private final boolean failing;
+
+		Slot(IViewEntry entry, String style, boolean failing) {
+			this.entry = entry;
+			this.style = style;
+			this.failing = failing;
+		}
+
+		public IViewEntry getEntry() {
+			return entry;
+		}
+
+		/**
+		 * @return the CSS positioning the tile.
+		 */
+		public String getStyle() {
+			return style;
+		}
+
+		/**
+		 * @return <code>true</code> if the tile is in the failing section.
+		 */
+		public boolean isFailing() {
+			return failing;
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package hudson.model;
+
+import hudson.Extension;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Running totals of the work done by a {@link RadiatorView}, so the cost of
+ * radiators on a shared controller can be monitored. They are served as JSON
+ * by each view's <code>radiatorMetrics</code> URL, and for all views by the
+ * <code>/radiatorMetrics</code> root URL.
+ */
+public final class RadiatorMetrics {
+
+	/**
+	 * Upper bounds, in milliseconds, of the latency histogram buckets. The
+	 * last bucket holds every slower render or snapshot.
+	 */
+	private static final long[] LATENCY_BUCKETS = { 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+	private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+
+	private final AtomicLongArray snapshotLatencies = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+
+	private final AtomicLong renders = new AtomicLong();
+
+	private final AtomicLong renderMillis = new AtomicLong();
+
+	private final AtomicLong snapshots = new AtomicLong();
+
+	private final AtomicLong snapshotMillis = new AtomicLong();
+
+	private final AtomicLong backgroundSnapshots = new AtomicLong();
+
+	private final AtomicLong entries = new AtomicLong();
+
+	private final AtomicLong folders = new AtomicLong();
+
+	private final AtomicLong runs = new AtomicLong();
+
+	private final AtomicLong claimLookups = new AtomicLong();
+
+	private final AtomicLong testLookups = new AtomicLong();
+
+	private final AtomicLong actionLookups = new AtomicLong();
+
+	private final AtomicLong servedStale = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Adds the counts of a finished render.
+	 */
+	void record(RenderStats stats) {
+		long millis = stats.getDurationMillis();
+		latencies.incrementAndGet(bucket(millis));
+		renders.incrementAndGet();
+		renderMillis.addAndGet(millis);
+		add(stats);
+	}
+
+	/**
+	 * Counts a snapshot being computed, by a request or in the background.
+	 *
+	 * @param millis
+	 *            how long computing the snapshot took.
+	 * @param background
+	 *            the counts of a snapshot computed outside of any request,
+	 *            which no render records, or null.
+	 */
+	void snapshotBuilt(long millis, RenderStats background) {
+		snapshotLatencies.incrementAndGet(bucket(millis));
+		snapshots.incrementAndGet();
+		snapshotMillis.addAndGet(millis);
+		if (background != null) {
+			backgroundSnapshots.incrementAndGet();
+			add(background);
+		}
+	}
+
+	private static int bucket(long millis) {
+		int bucket = 0;
+		while (bucket < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[bucket]) {
+			bucket++;
+		}
+		return bucket;
+	}
+
+	private void add(RenderStats stats) {
+		entries.addAndGet(stats.getEntries());
+		folders.addAndGet(stats.getFolders());
+		runs.addAndGet(stats.getRuns());
+		claimLookups.addAndGet(stats.getClaimLookups());
+		testLookups.addAndGet(stats.getTestLookups());
+		actionLookups.addAndGet(stats.getActionLookups());
+	}
+
+	/**
+	 * Counts a request over the view's limit of concurrent renders, served
+	 * the latest snapshot or rejected if there is none.
+	 */
+	void overloaded(boolean served) {
+		(served ? servedStale : rejected).incrementAndGet();
+	}
+
+	/**
+	 * @param snapshot
+	 *            the view's latest snapshot, if any.
+	 * @return the metrics, as JSON.
+	 */
+	JSONObject toJSON(RadiatorSnapshot snapshot) {
+		JSONObject json = new JSONObject();
+		json.put("renders", renders.get());
+		json.put("renderMillis", renderMillis.get());
+		json.put("renderLatency", toJSON(latencies));
+		json.put("snapshotsBuilt", snapshots.get());
+		json.put("snapshotsBuiltInBackground", backgroundSnapshots.get());
+		json.put("snapshotMillis", snapshotMillis.get());
+		json.put("snapshotLatency", toJSON(snapshotLatencies));
+		json.put("entriesScanned", entries.get());
+		json.put("foldersTraversed", folders.get());
+		json.put("runsDereferenced", runs.get());
+		json.put("claimLookups", claimLookups.get());
+		json.put("testResultLookups", testLookups.get());
+		json.put("actionLookups", actionLookups.get());
+		json.put("rendersServedStale", servedStale.get());
+		json.put("rendersRejected", rejected.get());
+		if (snapshot != null) {
+			json.put("snapshotVersion", snapshot.getVersion());
+			json.put("snapshotAgeMillis", System.currentTimeMillis() - snapshot.getTimestamp());
+		}
+		return json;
+	}
+
+	private static JSONObject toJSON(AtomicLongArray latencies) {
+		JSONObject histogram = new JSONObject();
+		for (int i = 0; i < latencies.length(); i++) {
+			String bound = i < LATENCY_BUCKETS.length ? "le" + LATENCY_BUCKETS[i] : "inf";
+			histogram.put(bound, latencies.get(i));
+		}
+		return histogram;
+	}
+
+	static void send(StaplerResponse rsp, JSONObject json) throws IOException {
+		rsp.setContentType("application/json;charset=UTF-8");
+		rsp.setHeader("Cache-Control", "no-cache");
+		rsp.getWriter().print(json);
+	}
+
+	/**
+	 * Serves the metrics of every radiator view the user can see.
+	 */
+	@Extension
+	public static final class RootActionImpl implements RootAction {
+
+		public String getIconFileName() {
+			return null;
+		}
+
+		public String getDisplayName() {
+			return "Radiator Metrics";
+		}
+
+		public String getUrlName() {
+			return "radiatorMetrics";
+		}
+
+		public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+			Jenkins.getActiveInstance().checkPermission(Jenkins.READ);
+			JSONArray views = new JSONArray();
+			for (RadiatorView view : RadiatorUtil.getAllRadiatorViews()) {
+				if (!view.hasPermission(View.READ)) {
+					continue;
+				}
+				JSONObject json = view.getMetrics().toJSON(view.getLatestSnapshot());
+				json.put("view", view.getViewName());
+				json.put("url", view.getUrl());
+				views.add(json);
+			}
+			JSONObject json = new JSONObject();
+			json.put("views", views);
+			json.put("sharedJobStates", JobStatusRegistry.size());
+			json.put("warmUp", RadiatorWarmUp.toJSON());
+			send(rsp, json);
+		}
+	}
+}
@@ -0,0 +1,463 @@
+package hudson.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+/**
+ * An immutable, sorted view of the radiator's entries at a point in time.
+ * Every display showing the same view within a snapshot period is served from
+ * the same snapshot, so a wall of screens always shows a consistent state.
+ */
+public final class RadiatorSnapshot {
+
+	private static final Comparator<IViewEntry> BY_NAME = new Comparator<IViewEntry>() {
+		public int compare(IViewEntry a, IViewEntry b) {
+			return a.getName().compareTo(b.getName());
+		}
+	};
+
+	private final long version;
+
+	private final long timestamp;
+
+	private final int refresh;
+
+	private final List<IViewEntry> failing;
+
+	private final List<IViewEntry> passing;
+
+	/**
+	 * Every job the view shows, sorted by name, with groups split into their
+	 * jobs. Unlike {@link #passing}, it still holds the passing jobs while
+	 * others fail.
+	 */
+	private final List<IViewEntry> all;
+
+	private final int screen;
+
+	private final int screens;
+
+	private final int page;
+
+	private final int pages;
+
+	private final boolean stale;
+
+	/**
+	 * Identifies the entries hidden from the user this snapshot is for, 0 if
+	 * none is.
+	 */
+	private final long hidden;
+
+	/**
+	 * @param version
+	 *            version of the snapshot, only incremented when its content
+	 *            changes.
+	 * @param timestamp
+	 *            when the snapshot was computed.
+	 * @param refresh
+	 *            seconds after which displays should check for a new
+	 *            snapshot.
+	 * @param failing
+	 *            the entries shown prominently, in display order.
+	 * @param passing
+	 *            the other visible entries, in display order.
+	 */
+	RadiatorSnapshot(long version, long timestamp, int refresh, Collection<IViewEntry> failing,
+			Collection<IViewEntry> passing) {
+		this(version, timestamp, refresh, failing, passing, false);
+	}
+
+	/**
+	 * @param stale
+	 *            whether the snapshot was read back from disk, and is only
+	 *            shown until a live one has been computed.
+	 */
+	RadiatorSnapshot(long version, long timestamp, int refresh, Collection<IViewEntry> failing,
+			Collection<IViewEntry> passing, boolean stale) {
+		this(version, timestamp, refresh, failing, passing, leaves(failing, passing), stale);
+	}
+
+	/**
+	 * @param all
+	 *            every job the view shows, including the passing ones left
+	 *            out of <code>passing</code>, with groups split into their
+	 *            jobs.
+	 */
+	RadiatorSnapshot(long version, long timestamp, int refresh, Collection<IViewEntry> failing,
+			Collection<IViewEntry> passing, Collection<IViewEntry> all, boolean stale) {
+		this.version = version;
+		this.timestamp = timestamp;
+		this.refresh = refresh;
+		this.failing = Collections.unmodifiableList(new ArrayList<IViewEntry>(failing));
+		this.passing = Collections.unmodifiableList(new ArrayList<IViewEntry>(passing));
+		List<IViewEntry> sorted = new ArrayList<IViewEntry>(all);
+		Collections.sort(sorted, BY_NAME);
+		this.all = Collections.unmodifiableList(sorted);
+		this.screen = 1;
+		this.screens = 1;
+		this.page = 1;
+		this.pages = 1;
+		this.stale = stale;
+		this.hidden = 0;
+	}
+
+	private RadiatorSnapshot(RadiatorSnapshot source, List<IViewEntry> failing,
+			List<IViewEntry> passing, int screen, int screens, int page, int pages) {
+		this(source, failing, passing, source.all, screen, screens, page, pages, source.hidden);
+	}
+
+	private RadiatorSnapshot(RadiatorSnapshot source, List<IViewEntry> failing,
+			List<IViewEntry> passing, List<IViewEntry> all, int screen, int screens, int page, int pages,
+			long hidden) {
+		this.version = source.version;
+		this.timestamp = source.timestamp;
+		this.refresh = source.refresh;
+		this.failing = Collections.unmodifiableList(failing);
+		this.passing = Collections.unmodifiableList(passing);
+		this.all = all;
+		this.screen = screen;
+		this.screens = screens;
+		this.page = page;
+		this.pages = pages;
+		this.stale = source.stale;
+		this.hidden = hidden;
+	}
+
+	private RadiatorSnapshot(RadiatorSnapshot source, int refresh) {
+		this.version = source.version;
+		this.timestamp = source.timestamp;
+		this.refresh = refresh;
+		this.failing = source.failing;
+		this.passing = source.passing;
+		this.all = source.all;
+		this.screen = source.screen;
+		this.screens = source.screens;
+		this.page = source.page;
+		this.pages = source.pages;
+		this.stale = true;
+		this.hidden = source.hidden;
+	}
+
+	/**
+	 * @param refresh
+	 *            seconds after which displays should check for a live
+	 *            snapshot.
+	 * @return this snapshot, marked as stale.
+	 */
+	RadiatorSnapshot asStale(int refresh) {
+		return new RadiatorSnapshot(this, refresh);
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return when the snapshot was computed, or the time a replayed one
+	 *         shows.
+	 */
+	public Date getDate() {
+		return new Date(timestamp);
+	}
+
+	/**
+	 * @return <code>true</code> if this snapshot was saved before the
+	 *         controller restarted, or is an older one served while the view
+	 *         is too busy, and is shown until a live one is computed.
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	/**
+	 * @return <code>true</code> if the entries are groups of jobs, which
+	 *         snapshots saved before a restart never hold.
+	 */
+	public boolean isGrouped() {
+		for (IViewEntry entry : getJobs()) {
+			if (entry instanceof ProjectViewEntry) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return seconds after which displays should check for a new snapshot:
+	 *         short when builds are about to finish, long when nothing is
+	 *         happening.
+	 */
+	public int getRefresh() {
+		return refresh;
+	}
+
+	/**
+	 * @return the entries to be shown prominently.
+	 */
+	public List<IViewEntry> getFailingJobs() {
+		return failing;
+	}
+
+	/**
+	 * @return the remaining visible entries.
+	 */
+	public List<IViewEntry> getPassingJobs() {
+		return passing;
+	}
+
+	/**
+	 * @return all visible entries, failing ones first.
+	 */
+	public List<IViewEntry> getJobs() {
+		List<IViewEntry> jobs = new ArrayList<IViewEntry>(failing.size() + passing.size());
+		jobs.addAll(failing);
+		jobs.addAll(passing);
+		return jobs;
+	}
+
+	/**
+	 * @return every job the view shows, sorted by name, with groups split
+	 *         into their jobs. Passing jobs are included even when the view
+	 *         only shows failing ones, and screens and pages hold all of them.
+	 */
+	List<IViewEntry> getAllJobs() {
+		return all;
+	}
+
+	/**
+	 * Adds the entries to the leaves, replacing groups by their jobs.
+	 */
+	static void addLeaves(Collection<IViewEntry> entries, Collection<IViewEntry> leaves) {
+		for (IViewEntry entry : entries) {
+			if (entry instanceof ProjectViewEntry) {
+				leaves.addAll(((ProjectViewEntry) entry).getJobs());
+			} else {
+				leaves.add(entry);
+			}
+		}
+	}
+
+	private static List<IViewEntry> leaves(Collection<IViewEntry> failing, Collection<IViewEntry> passing) {
+		List<IViewEntry> leaves = new ArrayList<IViewEntry>(failing.size() + passing.size());
+		addLeaves(failing, leaves);
+		addLeaves(passing, leaves);
+		return leaves;
+	}
+
+	/**
+	 * @return an identifier of the entries hidden from the user, which is the
+	 *         same for all users who can see the same entries, and 0 if they
+	 *         can see all of them.
+	 */
+	public long getHidden() {
+		return hidden;
+	}
+
+	/**
+	 * Removes the entries the current user may not see. Groups of jobs only
+	 * keep the jobs the user may see.
+	 *
+	 * @param visible
+	 *            the items the user may see.
+	 * @return a snapshot with the same version holding only what the user
+	 *         may see.
+	 */
+	RadiatorSnapshot filter(VisibleItems visible) {
+		// the hidden jobs are identified from all the jobs, sorted by name,
+		// so the identifier doesn't change when passing jobs are left out.
+		long hidden = 17;
+		List<IViewEntry> all = new ArrayList<IViewEntry>(this.all.size());
+		for (IViewEntry job : this.all) {
+			if (visible.canSee(job)) {
+				all.add(job);
+			} else {
+				hidden = 31 * hidden + job.getName().hashCode();
+			}
+		}
+		if (hidden == 17) {
+			return this;
+		}
+		List<IViewEntry> failing = new ArrayList<IViewEntry>(this.failing.size());
+		List<IViewEntry> passing = new ArrayList<IViewEntry>(this.passing.size());
+		filter(this.failing, failing, visible);
+		filter(this.passing, passing, visible);
+		return new RadiatorSnapshot(this, failing, passing, Collections.unmodifiableList(all), screen, screens,
+				page, pages, hidden);
+	}
+
+	private static void filter(List<IViewEntry> entries, List<IViewEntry> kept, VisibleItems visible) {
+		for (IViewEntry entry : entries) {
+			if (!visible.canSee(entry)) {
+				continue;
+			}
+			if (entry instanceof ProjectViewEntry) {
+				ProjectViewEntry project = (ProjectViewEntry) entry;
+				ProjectViewEntry shown = new ProjectViewEntry(project.getName());
+				for (IViewEntry job : project.getJobs()) {
+					if (visible.canSee(job)) {
+						shown.addBuild(job);
+					}
+				}
+				kept.add(shown.getJobs().size() == project.getJobs().size() ? project : shown);
+			} else {
+				kept.add(entry);
+			}
+		}
+	}
+
+	/**
+	 * @return number of the screen this snapshot is shown on, starting at 1.
+	 */
+	public int getScreen() {
+		return screen;
+	}
+
+	/**
+	 * @return number of screens the view is split across.
+	 */
+	public int getScreens() {
+		return screens;
+	}
+
+	/**
+	 * Splits the visible entries into <code>screens</code> contiguous slices
+	 * and returns the one for the given screen. Failing entries come first in
+	 * the display order, so they are allocated to the first screens.
+	 *
+	 * @param screen
+	 *            the screen to get the entries for, starting at 1.
+	 * @param screens
+	 *            the number of screens.
+	 * @return a snapshot with the same version holding only that slice.
+	 */
+	public RadiatorSnapshot getShard(int screen, int screens) {
+		if (screens <= 1) {
+			return this;
+		}
+		int total = failing.size() + passing.size();
+		int perScreen = (total + screens - 1) / screens;
+		int from = Math.min(total, (screen - 1) * perScreen);
+		int to = Math.min(total, from + perScreen);
+		return new RadiatorSnapshot(this, slice(failing, from, to),
+				slice(passing, from - failing.size(), to - failing.size()), screen, screens, 1, 1);
+	}
+
+	/**
+	 * @return number of the page shown, starting at 1.
+	 */
+	public int getPage() {
+		return page;
+	}
+
+	/**
+	 * @return number of pages the entries are split into.
+	 */
+	public int getPages() {
+		return pages;
+	}
+
+	/**
+	 * @param maxTiles
+	 *            maximum number of tiles on a page.
+	 * @return the number of pages needed to show every entry.
+	 * @see #getPage(int, int)
+	 */
+	public int getPageCount(int maxTiles) {
+		maxTiles = Math.max(1, maxTiles);
+		if (failing.size() >= maxTiles) {
+			return (failing.size() + passing.size() + maxTiles - 1) / maxTiles;
+		}
+		int room = maxTiles - failing.size();
+		return Math.max(1, (passing.size() + room - 1) / room);
+	}
+
+	/**
+	 * Returns one page of this snapshot, which never holds more than
+	 * <code>maxTiles</code> entries. Failing entries are pinned on every page,
+	 * the passing ones fill the remaining tiles. If there are too many failing
+	 * entries to fit on a page, they are paged like the passing ones instead,
+	 * failing ones first.
+	 *
+	 * @param page
+	 *            the page to return, starting at 1.
+	 * @param maxTiles
+	 *            maximum number of tiles on a page.
+	 * @return a snapshot with the same version holding only that page.
+	 */
+	public RadiatorSnapshot getPage(int page, int maxTiles) {
+		int count = getPageCount(maxTiles);
+		if (count <= 1) {
+			return this;
+		}
+		maxTiles = Math.max(1, maxTiles);
+		page = Math.max(1, Math.min(page, count));
+		if (failing.size() >= maxTiles) {
+			int from = (page - 1) * maxTiles;
+			int to = from + maxTiles;
+			return new RadiatorSnapshot(this, slice(failing, from, to),
+					slice(passing, from - failing.size(), to - failing.size()), screen, screens, page, count);
+		}
+		int room = maxTiles - failing.size();
+		int from = (page - 1) * room;
+		return new RadiatorSnapshot(this, new ArrayList<IViewEntry>(failing),
+				slice(passing, from, from + room), screen, screens, page, count);
+	}
+
+	/**
+	 * @return this snapshot's entries and state, as served to displays
+	 *         polling the view.
+	 */
+	public JSONObject toJSON() {
+		JSONObject json = new JSONObject();
+		json.put("version", version);
+		json.put("timestamp", timestamp);
+		json.put("refresh", refresh);
+		json.put("stale", stale);
+		json.put("screen", screen);
+		json.put("screens", screens);
+		json.put("page", page);
+		json.put("pages", pages);
+		json.put("failing", toJSON(failing));
+		json.put("passing", toJSON(passing));
+		return json;
+	}
+
+	private static JSONArray toJSON(List<IViewEntry> entries) {
+		JSONArray array = new JSONArray();
+		for (IViewEntry entry : entries) {
+			JSONObject json = new JSONObject();
+			json.put("name", entry.getName());
+			json.put("url", entry.getUrl());
+			json.put("status", entry.getStatus());
+			json.put("broken", entry.getBroken());
+			json.put("stable", entry.getStable());
+			json.put("building", entry.getBuilding());
+			json.put("queued", !entry.hasChildren() && entry.getQueued());
+			json.put("claimed", entry.isClaimed());
+			json.put("claim", entry.getClaim());
+			json.put("culprit", entry.getCulprit());
+			json.put("testCount", entry.getTestCount());
+			json.put("failCount", entry.getFailCount());
+			array.add(json);
+		}
+		return array;
+	}
+
+	private static List<IViewEntry> slice(List<IViewEntry> entries, int from, int to) {
+		from = Math.max(0, Math.min(entries.size(), from));
+		to = Math.max(from, Math.min(entries.size(), to));
+		return new ArrayList<IViewEntry>(entries.subList(from, to));
+	}
+}
@@ -0,0 +1,133 @@
+package hudson.model;
+
+import hudson.util.AtomicFileWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Saves the latest snapshot of each {@link RadiatorView} under
+ * <code>$JENKINS_HOME/radiatorview</code>, so that radiators can show it
+ * straight away after a restart, while the builds they need are loaded.
+ */
+final class RadiatorSnapshotStore {
+
+	private static final Logger LOGGER = Logger.getLogger(RadiatorSnapshotStore.class.getName());
+
+	private RadiatorSnapshotStore() {
+	}
+
+	/**
+	 * @return the file holding the view's snapshot, named after its URL so
+	 *         that views of different folders don't clash.
+	 */
+	static File getFile(View view) {
+		String url = view.getUrl();
+		if (url.endsWith("/")) {
+			url = url.substring(0, url.length() - 1);
+		}
+		File dir = new File(Jenkins.getActiveInstance().getRootDir(), "radiatorview");
+		return new File(dir, url.replace('/', '_') + ".json");
+	}
+
+	/**
+	 * @param view
+	 *            the view to load the snapshot of.
+	 * @param refresh
+	 *            seconds after which displays should check for a live
+	 *            snapshot.
+	 * @return the view's saved snapshot, marked as stale, or null if there is
+	 *         none or it can't be read.
+	 */
+	static RadiatorSnapshot load(View view, int refresh) {
+		File file = getFile(view);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			JSONObject json = JSONObject.fromObject(FileUtils.readFileToString(file, "UTF-8"));
+			return new RadiatorSnapshot(json.getLong("version"), json.getLong("timestamp"), refresh,
+					entries(json.getJSONArray("failing")), entries(json.getJSONArray("passing")), true);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to read the saved snapshot of " + view.getViewName(), e);
+		} catch (JSONException e) {
+			LOGGER.log(Level.WARNING, "Ignoring the corrupted saved snapshot of " + view.getViewName(), e);
+		}
+		return null;
+	}
+
+	private static List<IViewEntry> entries(JSONArray array) {
+		List<IViewEntry> entries = new ArrayList<IViewEntry>(array.size());
+		for (int i = 0; i < array.size(); i++) {
+			entries.add(entry(array.getJSONObject(i)));
+		}
+		return entries;
+	}
+
+	/**
+	 * Groups are read back as groups of their stored jobs, so that they are
+	 * filtered job by job for each user like live groups.
+	 */
+	private static IViewEntry entry(JSONObject json) {
+		JSONArray jobs = json.optJSONArray("jobs");
+		if (jobs == null || jobs.isEmpty() || !(jobs.get(0) instanceof JSONObject)) {
+			return new StoredViewEntry(json);
+		}
+		ProjectViewEntry group = new ProjectViewEntry(json.getString("name"));
+		for (int i = 0; i < jobs.size(); i++) {
+			group.addBuild(new StoredViewEntry(jobs.getJSONObject(i)));
+		}
+		return group;
+	}
+
+	/**
+	 * Replaces the view's saved snapshot. The file is written atomically, so a
+	 * crash never leaves a truncated snapshot behind. Jobs only save what
+	 * was computed to render them, see {@link StoredViewEntry#toJSON}.
+	 */
+	static void save(View view, RadiatorSnapshot snapshot) {
+		File file = getFile(view);
+		JSONObject json = new JSONObject();
+		json.put("version", snapshot.getVersion());
+		json.put("timestamp", snapshot.getTimestamp());
+		json.put("failing", toJSON(snapshot.getFailingJobs()));
+		json.put("passing", toJSON(snapshot.getPassingJobs()));
+		try {
+			File dir = file.getParentFile();
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Failed to create " + dir);
+			}
+			AtomicFileWriter w = new AtomicFileWriter(file, "UTF-8");
+			try {
+				w.write(json.toString());
+				w.commit();
+			} finally {
+				w.abort();
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to save the snapshot of " + view.getViewName(), e);
+		} catch (RuntimeException e) {
+			// the entries are read from live jobs, which may have gone.
+			LOGGER.log(Level.WARNING, "Failed to save the snapshot of " + view.getViewName(), e);
+		}
+	}
+
+	private static JSONArray toJSON(List<IViewEntry> entries) {
+		JSONArray array = new JSONArray();
+		for (IViewEntry entry : entries) {
+			array.add(StoredViewEntry.toJSON(entry));
+		}
+		return array;
+	}
+}
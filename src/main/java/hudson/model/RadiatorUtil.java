@@ -1,16 +1,28 @@
 package hudson.model;
 
+import com.cloudbees.hudson.plugins.folder.AbstractFolder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import jenkins.model.Jenkins;
+
 /**
  * Utilities used by the radiator view. 
  */
 public class RadiatorUtil {
 
 	public static Result getLastFinishedResult(Job job) {
-		Run lastBuild = job.getLastBuild();
+		Result result = BuildHistory.of(job).getLastFinishedResult();
+		if (result != null) {
+			return result;
+		}
+		Run lastBuild = RenderStats.run(job.getLastBuild());
 		while (lastBuild != null
 				&& (lastBuild.hasntStartedYet() || lastBuild.isBuilding()
 						|| lastBuild.isLogUpdated() || lastBuild.getResult() == Result.ABORTED)) {
-			lastBuild = lastBuild.getPreviousBuild();
+			lastBuild = RenderStats.run(lastBuild.getPreviousBuild());
 		}
 		if (lastBuild != null) {
 			return lastBuild.getResult();
@@ -18,4 +30,29 @@ public class RadiatorUtil {
 			return Result.NOT_BUILT;
 		}
 	}
+
+	/**
+	 * @return every radiator view visible to the current user, including
+	 *         those in folders and nested views.
+	 */
+	static List<RadiatorView> getAllRadiatorViews() {
+		List<RadiatorView> views = new ArrayList<RadiatorView>();
+		Jenkins jenkins = Jenkins.getActiveInstance();
+		addRadiatorViews(jenkins.getViews(), views);
+		for (AbstractFolder<?> folder : jenkins.getAllItems(AbstractFolder.class)) {
+			addRadiatorViews(folder.getViews(), views);
+		}
+		return views;
+	}
+
+	private static void addRadiatorViews(Collection<View> candidates, List<RadiatorView> views) {
+		for (View view : candidates) {
+			if (view instanceof RadiatorView) {
+				views.add((RadiatorView) view);
+			}
+			if (view instanceof ViewGroup) {
+				addRadiatorViews(((ViewGroup) view).getViews(), views);
+			}
+		}
+	}
 }
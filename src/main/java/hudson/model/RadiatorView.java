@@ -1,23 +1,52 @@
 package hudson.model;
 
 import com.cloudbees.hudson.plugins.folder.AbstractFolder;
+import com.cloudbees.hudson.plugins.folder.computed.ComputedFolder;
 import hudson.Extension;
 import hudson.Util;
 import hudson.model.Descriptor.FormException;
+import hudson.security.ACL;
 import hudson.util.FormValidation;
 import jenkins.model.Jenkins;
+import jenkins.util.Timer;
+import jenkins.util.xml.XMLUtils;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.xml.sax.SAXException;
 
+import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -35,8 +64,50 @@ public class RadiatorView extends ListView {
 	
 	private static final int DEFAULT_CAPTION_SIZE = 36;
 
+	private static final int DEFAULT_PAGE_INTERVAL = 20;
+
 	private static final Logger LOGGER = Logger.getLogger(RadiatorView.class.getName());
 
+	/**
+	 * How long, in milliseconds, a snapshot is shared between the displays
+	 * showing this view. Snapshots are aligned on multiples of this period so
+	 * that all screens refreshing within it get the same one.
+	 */
+	static final long SNAPSHOT_PERIOD = Long.getLong(RadiatorView.class.getName() + ".snapshotPeriod", 10000L);
+
+	/**
+	 * Bounds, in seconds, of the refresh hint sent to displays: the shortest
+	 * one is used when builds are about to finish, the busy one while builds
+	 * are running or queued, the idle one when nothing is happening.
+	 */
+	static final int MIN_REFRESH = Integer.getInteger(RadiatorView.class.getName() + ".minRefresh", 5);
+
+	static final int BUSY_REFRESH = Integer.getInteger(RadiatorView.class.getName() + ".busyRefresh", 30);
+
+	static final int IDLE_REFRESH = Integer.getInteger(RadiatorView.class.getName() + ".idleRefresh", 300);
+
+	/**
+	 * Seconds between two updates of the progress of running builds.
+	 */
+	static final int PROGRESS_INTERVAL = Integer.getInteger(RadiatorView.class.getName() + ".progressInterval", 2);
+
+	/**
+	 * How many radiator requests of a view may be served at once. Requests
+	 * over the limit are served the latest snapshot, marked as stale, or
+	 * asked to retry if there is none, rather than waiting for a live one.
+	 */
+	static final int MAX_RENDERS = Math.max(1, Integer.getInteger(RadiatorView.class.getName() + ".maxRenders", 4));
+
+	/**
+	 * Request attribute set on requests over the limit of concurrent renders.
+	 */
+	private static final String OVERLOADED = RadiatorView.class.getName() + ".overloaded";
+
+	/**
+	 * Number of binary feeds kept per view, for devices to get deltas from.
+	 */
+	private static final int FEEDS = 32;
+
 	/**
 	 * Entries to be shown in the view.
 	 */
@@ -52,6 +123,57 @@ public class RadiatorView extends ListView {
 	 */
 	transient ViewEntryColors colors;
 
+	/**
+	 * Latest snapshot of the view's contents.
+	 */
+	private transient volatile RadiatorSnapshot snapshot;
+
+	/**
+	 * Version of the latest snapshot and fingerprint of its content, used to
+	 * decide whether the version changes.
+	 */
+	private transient long snapshotVersion;
+
+	private transient long snapshotFingerprint;
+
+	private transient Object snapshotLock = new Object();
+
+	/**
+	 * Whether the snapshot saved before the last restart has been looked for,
+	 * and the version of the latest snapshot saved.
+	 */
+	private transient boolean storeLoaded;
+
+	private transient long savedVersion;
+
+	/**
+	 * Version of the latest snapshot exported, and whether an export is due
+	 * once the next snapshot period starts.
+	 */
+	private transient long exportedVersion;
+
+	private transient boolean exportScheduled;
+
+	/**
+	 * Layouts computed for the latest snapshot version, by screen, page and
+	 * aspect ratio.
+	 */
+	private transient Map<String, RadiatorLayout> layouts;
+
+	private transient long layoutsVersion;
+
+	private transient RadiatorMetrics metrics;
+
+	private transient Semaphore renders;
+
+	private transient RadiatorHistoryLog history;
+
+	/**
+	 * Binary feeds of the latest snapshots, by version, entries hidden and
+	 * staleness, kept to be served as is and to compute deltas from.
+	 */
+	private transient Map<String, RadiatorFeed> feeds;
+
 	/**
 	 * User configuration - show stable builds when there are some unstable
 	 * builds.
@@ -98,6 +220,61 @@ public class RadiatorView extends ListView {
 	 @DataBoundSetter
 	 String excludeRegex;
 
+	/**
+	 * User configuration - render minimal markup laid out by the static
+	 * stylesheet, for low-powered displays.
+	 */
+	 @DataBoundSetter
+	 Boolean compactMode = false;
+
+	/**
+	 * User configuration - maximum number of tiles shown at once, the view
+	 * cycles through pages if there are more. 0 disables paging.
+	 */
+	 @DataBoundSetter
+	 Integer maxTilesPerPage = 0;
+
+	/**
+	 * User configuration - seconds each page is shown for.
+	 */
+	 @DataBoundSetter
+	 Integer pageInterval = DEFAULT_PAGE_INTERVAL;
+
+	/**
+	 * User configuration - size tiles by status, giving more room to failing
+	 * jobs.
+	 */
+	 @DataBoundSetter
+	 Boolean treemapLayout = false;
+
+	/**
+	 * User configuration - let the view's activity decide how often displays
+	 * refresh.
+	 */
+	 @DataBoundSetter
+	 Boolean adaptiveRefresh = false;
+
+	/**
+	 * User configuration - show multibranch projects and organization folders
+	 * as a single tile rather than a tile per branch.
+	 */
+	 @DataBoundSetter
+	 Boolean collapseMultibranch = false;
+
+	/**
+	 * User configuration - directory the view's snapshot is exported to, if
+	 * any. Only administrators may change it, whether through the form, data
+	 * binding or <code>config.xml</code>.
+	 */
+	 String exportDirectory;
+
+	/**
+	 * User configuration - keep a log of the changes of the entries, so the
+	 * radiator can be shown as it was at a given time.
+	 */
+	 @DataBoundSetter
+	 Boolean keepHistory = false;
+
 	/**
 	 * @param name
 	 *            view name.
@@ -135,16 +312,49 @@ public class RadiatorView extends ListView {
 	private void addItems(Collection<TopLevelItem> items, ProjectViewEntry content) {
 		for (TopLevelItem item : items) {
 			LOGGER.fine(item.getName() + " (" + item.getClass() + ")");
+			if (item instanceof ComputedFolder && Boolean.TRUE.equals(collapseMultibranch)) {
+				if (!isExcluded(item)) {
+					RenderStats.entryScanned();
+					content.addBuild(new FolderViewEntry(this, (ComputedFolder<?>) item));
+				}
+				continue;
+			}
 			if (item instanceof AbstractFolder) {
+				RenderStats.folderTraversed();
 				addItems(((AbstractFolder) item).getItems(), content);
 			}
 			if (item instanceof Job && !isDisabled(item) && !isExcluded(item)) {
+				RenderStats.entryScanned();
 				IViewEntry entry = new JobViewEntry(this, (Job<?, ?>) item);
 				content.addBuild(entry);
 			}
 		}
 	}
 
+	/**
+	 * @return the jobs shown by the view, without looking at their builds.
+	 */
+	List<Job<?, ?>> getShownJobs() {
+		List<Job<?, ?>> jobs = new ArrayList<Job<?, ?>>();
+		addJobs(getItems(), jobs);
+		return jobs;
+	}
+
+	private void addJobs(Collection<TopLevelItem> items, List<Job<?, ?>> jobs) {
+		for (TopLevelItem item : items) {
+			if (item instanceof ComputedFolder && Boolean.TRUE.equals(collapseMultibranch)) {
+				// their branches are aggregated rather than shown.
+				continue;
+			}
+			if (item instanceof AbstractFolder) {
+				addJobs(((AbstractFolder) item).getItems(), jobs);
+			}
+			if (item instanceof Job && !isDisabled(item) && !isExcluded(item)) {
+				jobs.add((Job<?, ?>) item);
+			}
+		}
+	}
+
 	private boolean isExcluded(TopLevelItem item) {
 		final boolean matches = Pattern.matches(excludeRegex, item.getFullName());
 		LOGGER.log(Level.FINE, "Checking {0}, fullName={1}, excluded={2}",
@@ -156,6 +366,798 @@ public class RadiatorView extends ListView {
 		return item instanceof AbstractProject && ((AbstractProject) item).isDisabled();
 	}
 
+	/**
+	 * @return the entries the current user may see.
+	 */
+	VisibleItems getVisibleItems() {
+		return VisibleItems.forCurrentUser();
+	}
+
+	/**
+	 * Returns the current snapshot of the view, without the jobs the user may
+	 * not see, or only a slice of it if the
+	 * request asks for one screen of a multi-screen display, e.g.
+	 * <code>?screen=2&amp;of=6</code>. If paging is enabled, only the page due
+	 * to be shown now is returned, unless the request asks for a given
+	 * <code>page</code>.
+	 * 
+	 * @param req
+	 *            the current request.
+	 * @return the snapshot to render.
+	 */
+	public RadiatorSnapshot getSnapshot(StaplerRequest req) {
+		Long at = getReplayTime(req);
+		RadiatorSnapshot current = at != null ? replay(at) : getAdmittedSnapshot(req);
+		current = current.filter(getVisibleItems());
+		int screens = parsePositiveInt(req.getParameter("of"), 1);
+		int screen = Math.min(parsePositiveInt(req.getParameter("screen"), 1), screens);
+		current = current.getShard(screen, screens);
+		if (isPaged()) {
+			int page = parsePositiveInt(req.getParameter("page"), 0);
+			if (page == 0) {
+				long slot = System.currentTimeMillis() / (getPageInterval() * 1000L);
+				page = (int) (slot % current.getPageCount(maxTilesPerPage)) + 1;
+			}
+			current = current.getPage(page, maxTilesPerPage);
+		}
+		RenderStats.rendered(current.getFailingJobs().size() + current.getPassingJobs().size());
+		return current;
+	}
+
+	/**
+	 * @return the time the request asks to see the radiator at, e.g.
+	 *         <code>?at=2016-03-01T14:30</code> or as milliseconds since the
+	 *         epoch, or null for the live radiator or if the view keeps no
+	 *         history.
+	 */
+	public Long getReplayTime(StaplerRequest req) {
+		String at = Util.fixEmptyAndTrim(req.getParameter("at"));
+		if (at == null || !Boolean.TRUE.equals(keepHistory)) {
+			return null;
+		}
+		try {
+			return Long.parseLong(at);
+		} catch (NumberFormatException e) {
+			// not milliseconds
+		}
+		for (String pattern : new String[] { "yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd'T'HH:mm", "yyyy-MM-dd" }) {
+			try {
+				return new SimpleDateFormat(pattern).parse(at).getTime();
+			} catch (ParseException e) {
+				// try the next one
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the radiator as it was at the given time, read from the view's
+	 *         history, with no entries if it doesn't go back that far.
+	 */
+	private RadiatorSnapshot replay(long at) {
+		Map<String, Byte> states = null;
+		try {
+			states = getHistory().replay(at);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to read the history of " + getViewName(), e);
+		}
+		ProjectViewEntry contents = RadiatorHistoryLog.toContents(this,
+				states != null ? states : Collections.<String, Byte> emptyMap());
+		Collection<IViewEntry> failing = contents.getFailingJobs();
+		Collection<IViewEntry> passing = contents.getPassingJobs();
+		if (!Boolean.TRUE.equals(showStable) && !failing.isEmpty()) {
+			passing = Collections.emptyList();
+		}
+		// version 0: not one of the live snapshots, whose layouts are cached.
+		return new RadiatorSnapshot(0, at, IDLE_REFRESH, failing, passing);
+	}
+
+	/**
+	 * Serves the same snapshot as the radiator page, as JSON, including the
+	 * refresh hint displays should poll with.
+	 */
+	public void doRadiatorJson(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		checkPermission(READ);
+		Semaphore renders = getRenders();
+		boolean admitted = renders.tryAcquire();
+		if (!admitted && !admitOverloaded(req, rsp)) {
+			return;
+		}
+		RenderStats stats = RenderStats.begin();
+		try {
+			RadiatorSnapshot current = getSnapshot(req);
+			rsp.setContentType("application/json;charset=UTF-8");
+			rsp.setHeader("Cache-Control", "no-cache");
+			rsp.getWriter().print(current.toJSON());
+		} finally {
+			if (admitted) {
+				renders.release();
+			}
+			RenderStats.end();
+			stats.log(getViewName());
+			getMetrics().record(stats);
+		}
+	}
+
+	/**
+	 * Serves the snapshot as a {@link RadiatorFeed}, for small devices. The
+	 * feed holds every job of the view, whether the page shows it or not, and
+	 * the feed of each snapshot is computed once and shared by all devices.
+	 * <code>?since=</code> and a version gets only the entries which changed
+	 * since that version, if it is recent enough, and <code>?names</code> the
+	 * names of the entries, in feed order.
+	 */
+	public void doRadiatorFeed(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		checkPermission(READ);
+		Semaphore renders = getRenders();
+		boolean admitted = renders.tryAcquire();
+		if (!admitted && !admitOverloaded(req, rsp)) {
+			return;
+		}
+		try {
+			RadiatorSnapshot current = getAdmittedSnapshot(req).filter(getVisibleItems());
+			RadiatorFeed feed = getFeed(current);
+			rsp.setHeader("Cache-Control", "no-cache");
+			if (req.getParameter("names") != null) {
+				rsp.setContentType("text/plain;charset=UTF-8");
+				rsp.getWriter().print(feed.getNames());
+				return;
+			}
+			byte[] payload = null;
+			String since = req.getParameter("since");
+			if (since != null) {
+				RadiatorFeed base = getFeed(since + "/" + current.getHidden() + "/");
+				if (base != null) {
+					payload = feed.getDelta(base);
+				}
+			}
+			if (payload == null) {
+				String etag = "\"" + current.getVersion() + "-" + current.getHidden() + "\"";
+				if (etag.equals(req.getHeader("If-None-Match"))) {
+					rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					return;
+				}
+				rsp.setHeader("ETag", etag);
+				payload = feed.getFull();
+			}
+			rsp.setContentType("application/octet-stream");
+			rsp.setContentLength(payload.length);
+			rsp.getOutputStream().write(payload);
+		} finally {
+			if (admitted) {
+				renders.release();
+			}
+		}
+	}
+
+	/**
+	 * @return the feed of the snapshot, computed if needed.
+	 */
+	private RadiatorFeed getFeed(RadiatorSnapshot snapshot) {
+		String key = snapshot.getVersion() + "/" + snapshot.getHidden() + "/" + (snapshot.isStale() ? "stale" : "");
+		RadiatorFeed feed = getFeed(key);
+		if (feed == null) {
+			feed = RadiatorFeed.of(snapshot);
+			synchronized (this) {
+				feeds.put(key, feed);
+			}
+		}
+		return feed;
+	}
+
+	private RadiatorFeed getFeed(String key) {
+		synchronized (this) {
+			if (feeds == null) {
+				feeds = new LinkedHashMap<String, RadiatorFeed>(16, 0.75f, true) {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, RadiatorFeed> eldest) {
+						return size() > FEEDS;
+					}
+				};
+			}
+			return feeds.get(key);
+		}
+	}
+
+	/**
+	 * Serves the progress of the view's running builds, as JSON, so displays
+	 * can update it more often than they reload the radiator. Only executors
+	 * are looked at, and durations are estimated from the cached
+	 * {@link BuildHistory} of each job: no snapshot is computed, so polling
+	 * the progress doesn't take one of the view's renders.
+	 */
+	public void doRadiatorProgress(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		checkPermission(READ);
+		List<Run<?, ?>> running = new ArrayList<Run<?, ?>>();
+		for (Computer computer : Jenkins.getActiveInstance().getComputers()) {
+			addRunning(computer.getExecutors(), running);
+			addRunning(computer.getOneOffExecutors(), running);
+		}
+		JSONArray builds = new JSONArray();
+		if (!running.isEmpty()) {
+			// only holds the jobs the current user may see.
+			Set<String> names = new HashSet<String>();
+			for (Job<?, ?> job : getShownJobs()) {
+				names.add(job.getFullName());
+			}
+			for (Run<?, ?> run : running) {
+				Job<?, ?> job = run.getParent();
+				if (names.contains(job.getFullName())) {
+					builds.add(new BuildProgress(run, BuildHistory.of(job).getEstimatedDuration()).toJSON());
+				}
+			}
+		}
+		JSONObject json = new JSONObject();
+		json.put("builds", builds);
+		RadiatorMetrics.send(rsp, json);
+	}
+
+	private static void addRunning(List<? extends Executor> executors, List<Run<?, ?>> running) {
+		for (Executor executor : executors) {
+			Queue.Executable executable = executor.getCurrentExecutable();
+			if (executable instanceof Run) {
+				running.add((Run<?, ?>) executable);
+			}
+		}
+	}
+
+	/**
+	 * @return seconds between two updates of the progress of running builds.
+	 */
+	public int getProgressInterval() {
+		return PROGRESS_INTERVAL;
+	}
+
+	/**
+	 * Renders the radiator, keeping count of the work it takes. Adding
+	 * <code>?profile</code> to the URL lets administrators see which entries
+	 * take longest to render.
+	 */
+	public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+		boolean profile = req.getParameter("profile") != null
+				&& Jenkins.getActiveInstance().hasPermission(Jenkins.ADMINISTER);
+		Semaphore renders = getRenders();
+		boolean admitted = renders.tryAcquire();
+		if (!admitted && !admitOverloaded(req, rsp)) {
+			return;
+		}
+		RenderStats stats = RenderStats.begin(profile);
+		try {
+			RequestDispatcher view = req.getView(this, "index.jelly");
+			if (view == null) {
+				rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			view.forward(req, rsp);
+		} finally {
+			if (admitted) {
+				renders.release();
+			}
+			RenderStats.end();
+			stats.log(getViewName());
+			getMetrics().record(stats);
+		}
+	}
+
+	/**
+	 * Serves a report of the time spent rendering each entry of the view,
+	 * slowest first, to administrators.
+	 */
+	public void doRadiatorProfile(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
+		RenderStats stats = RenderStats.begin(true);
+		try {
+			RadiatorSnapshot current = getSnapshot();
+			for (IViewEntry entry : current.getJobs()) {
+				touch(entry);
+			}
+		} finally {
+			RenderStats.end();
+		}
+		rsp.setContentType("text/plain;charset=UTF-8");
+		rsp.setHeader("Content-Disposition", "attachment; filename=radiator-profile.txt");
+		PrintWriter w = rsp.getWriter();
+		w.printf("Radiator %s: %d entries scanned, %d builds, %d action lookups in %dms%n",
+				getViewName(), stats.getEntries(), stats.getRuns(), stats.getActionLookups(),
+				stats.getDurationMillis());
+		w.println("total ms\tstatus\tculprits\tclaims\ttests\tqueue\tentry");
+		for (RenderStats.EntryProfile entry : stats.getSlowestEntries(Integer.MAX_VALUE)) {
+			w.println(entry.getTotal() + "\t" + entry.getStatus() + "\t" + entry.getCulprits() + "\t"
+					+ entry.getClaims() + "\t" + entry.getTests() + "\t" + entry.getQueue() + "\t"
+					+ entry.getName());
+		}
+	}
+
+	/**
+	 * Reads what the radiator shows of an entry, so that it gets profiled.
+	 */
+	private static void touch(IViewEntry entry) {
+		if (entry instanceof ProjectViewEntry) {
+			for (IViewEntry job : ((ProjectViewEntry) entry).getJobs()) {
+				touch(job);
+			}
+			return;
+		}
+		entry.getStatus();
+		entry.getCulprit();
+		entry.getClaim();
+		entry.getUnclaimedMatrixBuilds();
+		entry.getDiff();
+		entry.getFailCount();
+		entry.getTestCount();
+		entry.getLastStableBuild();
+		if (entry instanceof JobViewEntry) {
+			((JobViewEntry) entry).getQueueNumber();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the current render is being profiled.
+	 */
+	public boolean isProfiling() {
+		return RenderStats.isProfiling();
+	}
+
+	/**
+	 * @return the entries which took the longest so far in the current
+	 *         render, if it is profiled.
+	 */
+	public List<RenderStats.EntryProfile> getSlowestEntries() {
+		RenderStats stats = RenderStats.current();
+		if (stats == null) {
+			return Collections.emptyList();
+		}
+		return stats.getSlowestEntries(25);
+	}
+
+	/**
+	 * Serves the view's {@link RadiatorMetrics} as JSON.
+	 */
+	public void doRadiatorMetrics(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		checkPermission(READ);
+		RadiatorMetrics.send(rsp, getMetrics().toJSON(snapshot));
+	}
+
+	/**
+	 * Lets a request over the limit of concurrent renders be served the
+	 * latest snapshot, or tells the client to retry if there is none yet.
+	 * 
+	 * @return <code>true</code> if the request may be served.
+	 */
+	private boolean admitOverloaded(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		boolean served = snapshot != null;
+		getMetrics().overloaded(served);
+		if (!served) {
+			rsp.setHeader("Retry-After", String.valueOf(MIN_REFRESH));
+			rsp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The radiator is busy, retry shortly");
+			return false;
+		}
+		req.setAttribute(OVERLOADED, Boolean.TRUE);
+		return true;
+	}
+
+	/**
+	 * @return the snapshot for the request: the latest one for requests over
+	 *         the limit of concurrent renders, marked as stale if it is older
+	 *         than the current snapshot period, or else the current one.
+	 */
+	private RadiatorSnapshot getAdmittedSnapshot(StaplerRequest req) {
+		RadiatorSnapshot latest = snapshot;
+		if (latest == null || req.getAttribute(OVERLOADED) == null) {
+			return getSnapshot();
+		}
+		if (isCurrent(latest, System.currentTimeMillis() / SNAPSHOT_PERIOD)) {
+			return latest;
+		}
+		return latest.asStale(MIN_REFRESH);
+	}
+
+	private RadiatorHistoryLog getHistory() {
+		synchronized (this) {
+			if (history == null) {
+				history = new RadiatorHistoryLog(this);
+			}
+			return history;
+		}
+	}
+
+	private Semaphore getRenders() {
+		synchronized (this) {
+			if (renders == null) {
+				renders = new Semaphore(MAX_RENDERS);
+			}
+			return renders;
+		}
+	}
+
+	/**
+	 * @return the running totals of the work done by this view.
+	 */
+	RadiatorMetrics getMetrics() {
+		synchronized (this) {
+			if (metrics == null) {
+				metrics = new RadiatorMetrics();
+			}
+			return metrics;
+		}
+	}
+
+	/**
+	 * @return the latest snapshot of the view, without computing one, or
+	 *         null if there is none.
+	 */
+	RadiatorSnapshot getLatestSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return the snapshot for the current snapshot period, computing it if
+	 *         needed. It holds every entry, whatever the user may see.
+	 */
+	RadiatorSnapshot getSnapshot() {
+		if (RenderStats.isProfiling()) {
+			// profiled renders compute their own snapshot so its cost gets
+			// measured. It holds uncached job states, so it is never shared.
+			return buildSnapshot();
+		}
+		long epoch = System.currentTimeMillis() / SNAPSHOT_PERIOD;
+		RadiatorSnapshot current = snapshot;
+		if (isCurrent(current, epoch)) {
+			return current;
+		}
+		synchronized (getSnapshotLock()) {
+			current = snapshot;
+			if (isCurrent(current, epoch)) {
+				return current;
+			}
+			if (current == null && !storeLoaded) {
+				// first render since startup: show the saved snapshot until
+				// the builds it needs are loaded.
+				storeLoaded = true;
+				current = RadiatorSnapshotStore.load(this, MIN_REFRESH);
+				if (current != null) {
+					snapshot = current;
+					snapshotVersion = savedVersion = current.getVersion();
+					refreshInBackground();
+					return current;
+				}
+			}
+			storeLoaded = true;
+			snapshot = current = buildSnapshot();
+			saveIfChanged(current);
+			exportIfChanged(current);
+			return current;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the snapshot can be served for the given
+	 *         snapshot period. Stale snapshots are served until the live one
+	 *         computed in the background replaces them.
+	 */
+	private static boolean isCurrent(RadiatorSnapshot snapshot, long epoch) {
+		return snapshot != null && (snapshot.isStale() || snapshot.getTimestamp() / SNAPSHOT_PERIOD == epoch);
+	}
+
+	/**
+	 * Computes the live snapshot replacing a stale one.
+	 */
+	private void refreshInBackground() {
+		Timer.get().submit(new Runnable() {
+			public void run() {
+				RadiatorSnapshot fresh = null;
+				try {
+					fresh = buildSnapshot();
+				} finally {
+					synchronized (getSnapshotLock()) {
+						if (snapshot != null && snapshot.isStale()) {
+							// if it failed, let the next render compute it.
+							snapshot = fresh;
+							if (fresh != null) {
+								saveIfChanged(fresh);
+								exportIfChanged(fresh);
+							}
+						}
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Saves a snapshot to be shown after a restart, unless its content was
+	 * already saved.
+	 */
+	private void saveIfChanged(final RadiatorSnapshot snapshot) {
+		if (snapshot.getVersion() == savedVersion) {
+			return;
+		}
+		savedVersion = snapshot.getVersion();
+		Timer.get().submit(new Runnable() {
+			public void run() {
+				RadiatorSnapshotStore.save(RadiatorView.this, snapshot);
+			}
+		});
+	}
+
+	/**
+	 * Exports a snapshot to the view's export directory, if it has one,
+	 * unless its content was already exported.
+	 */
+	private void exportIfChanged(final RadiatorSnapshot snapshot) {
+		final String dir = getExportDirectory();
+		if (dir == null || snapshot.getVersion() == exportedVersion) {
+			return;
+		}
+		exportedVersion = snapshot.getVersion();
+		Timer.get().submit(new Runnable() {
+			public void run() {
+				RadiatorExporter.export(RadiatorView.this, snapshot, new File(dir));
+			}
+		});
+	}
+
+	/**
+	 * Gets the snapshot recomputed, and exported if it changed, once the next
+	 * snapshot period starts. Several builds starting or finishing within a
+	 * period lead to a single export.
+	 */
+	void scheduleExport() {
+		synchronized (this) {
+			if (exportScheduled) {
+				return;
+			}
+			exportScheduled = true;
+		}
+		long delay = SNAPSHOT_PERIOD - System.currentTimeMillis() % SNAPSHOT_PERIOD;
+		Timer.get().schedule(new Runnable() {
+			public void run() {
+				synchronized (RadiatorView.this) {
+					exportScheduled = false;
+				}
+				getSnapshot();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the position of each of the snapshot's tiles. Layouts are
+	 * cached for as long as the snapshot's version doesn't change, so tiles
+	 * keep their place between refreshes. The screen's aspect ratio can be
+	 * given by the request, e.g. <code>?aspect=16:9</code>.
+	 * 
+	 * @param snapshot
+	 *            the snapshot to render.
+	 * @param req
+	 *            the current request.
+	 * @return the layout of the snapshot.
+	 */
+	public RadiatorLayout getLayout(RadiatorSnapshot snapshot, StaplerRequest req) {
+		double aspectRatio = parseAspectRatio(req.getParameter("aspect"));
+		if (snapshot.getVersion() == 0) {
+			return computeLayout(snapshot, aspectRatio);
+		}
+		String key = snapshot.getScreen() + "/" + snapshot.getScreens() + "/"
+				+ snapshot.getPage() + "/" + snapshot.getPages() + "/" + aspectRatio + "/"
+				+ snapshot.getHidden();
+		synchronized (getSnapshotLock()) {
+			if (layouts == null || layoutsVersion != snapshot.getVersion()) {
+				layouts = new HashMap<String, RadiatorLayout>();
+				layoutsVersion = snapshot.getVersion();
+			}
+			RadiatorLayout layout = layouts.get(key);
+			if (layout == null) {
+				layout = computeLayout(snapshot, aspectRatio);
+				layouts.put(key, layout);
+			}
+			return layout;
+		}
+	}
+
+	private RadiatorLayout computeLayout(RadiatorSnapshot snapshot, double aspectRatio) {
+		if (Boolean.TRUE.equals(treemapLayout)) {
+			return RadiatorLayout.treemap(snapshot, aspectRatio);
+		}
+		if (Boolean.TRUE.equals(groupByPrefix)) {
+			return RadiatorLayout.uniform(snapshot, aspectRatio);
+		}
+		// how much space to allocate for failed and passing jobs.
+		double failingHeight = 100;
+		if (Boolean.TRUE.equals(showStable)) {
+			failingHeight = Boolean.TRUE.equals(showStableDetail) ? 66 : 85;
+		}
+		return RadiatorLayout.grid(snapshot, failingHeight, aspectRatio);
+	}
+
+	private static double parseAspectRatio(String value) {
+		double ratio = 16.0 / 9;
+		if (value != null) {
+			try {
+				int colon = value.indexOf(':');
+				if (colon > 0) {
+					ratio = Double.parseDouble(value.substring(0, colon))
+							/ Double.parseDouble(value.substring(colon + 1));
+				} else {
+					ratio = Double.parseDouble(value);
+				}
+			} catch (NumberFormatException e) {
+				LOGGER.log(Level.FINE, "Ignoring invalid aspect ratio {0}", value);
+			}
+		}
+		if (Double.isNaN(ratio) || Double.isInfinite(ratio)) {
+			ratio = 16.0 / 9;
+		}
+		// keep a bounded number of layouts per snapshot.
+		return Math.round(Math.max(0.2, Math.min(10, ratio)) * 100) / 100.0;
+	}
+
+	private Object getSnapshotLock() {
+		synchronized (this) {
+			if (snapshotLock == null) {
+				snapshotLock = new Object();
+			}
+			return snapshotLock;
+		}
+	}
+
+	/**
+	 * Computes a snapshot of every entry of the view. Snapshots are shared by
+	 * all users, so they are computed with full permissions and filtered for
+	 * each user by {@link #getSnapshot(StaplerRequest)}. Snapshots computed
+	 * outside of a request, when replacing a stale snapshot or exporting,
+	 * are counted on their own as no render records them.
+	 */
+	private RadiatorSnapshot buildSnapshot() {
+		RenderStats background = RenderStats.current() == null ? RenderStats.begin() : null;
+		long start = System.nanoTime();
+		SecurityContext previous = ACL.impersonate(ACL.SYSTEM);
+		try {
+			return buildSnapshotAsSystem();
+		} finally {
+			SecurityContextHolder.setContext(previous);
+			if (background != null) {
+				RenderStats.end();
+				background.log(getViewName());
+			}
+			getMetrics().snapshotBuilt(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), background);
+		}
+	}
+
+	private RadiatorSnapshot buildSnapshotAsSystem() {
+		Collection<IViewEntry> failing;
+		Collection<IViewEntry> passing;
+		// every job shown, including the passing ones left out while others
+		// fail, for the history and the feed.
+		List<IViewEntry> all = new ArrayList<IViewEntry>();
+		Collection<IViewEntry> omitted = Collections.emptyList();
+		if (Boolean.TRUE.equals(groupByPrefix)) {
+			failing = new ArrayList<IViewEntry>();
+			passing = new ArrayList<IViewEntry>();
+			for (IViewEntry project : getContentsByPrefix().getJobs()) {
+				if (project.getStable()) {
+					passing.add(project);
+				} else {
+					failing.add(project);
+				}
+			}
+			RadiatorSnapshot.addLeaves(failing, all);
+			RadiatorSnapshot.addLeaves(passing, all);
+		} else {
+			ProjectViewEntry contents = getContents();
+			failing = contents.getFailingJobs();
+			if (Boolean.TRUE.equals(showStable) || failing.isEmpty()) {
+				passing = contents.getPassingJobs();
+			} else {
+				passing = new ArrayList<IViewEntry>();
+				omitted = contents.getPassingJobs();
+			}
+			all.addAll(contents.getJobs());
+		}
+
+		boolean profiling = RenderStats.isProfiling();
+		if (Boolean.TRUE.equals(keepHistory) && !profiling) {
+			getHistory().update(System.currentTimeMillis(), all);
+		}
+
+		long fingerprint = fingerprint(failing, fingerprint(passing, 17));
+		// the feed shows the passing jobs left out of the page, so their
+		// changes are new versions too.
+		for (IViewEntry entry : omitted) {
+			fingerprint = 31 * hash(fingerprint, entry.getName()) + EntryState.of(entry);
+		}
+		long version;
+		synchronized (getSnapshotLock()) {
+			// snapshots replacing stale ones are computed in the background.
+			if (!profiling && (snapshotVersion == 0 || fingerprint != snapshotFingerprint)) {
+				snapshotVersion++;
+				snapshotFingerprint = fingerprint;
+			}
+			version = snapshotVersion;
+		}
+		int refresh = BUSY_REFRESH;
+		if (Boolean.TRUE.equals(adaptiveRefresh)) {
+			refresh = Math.min(getRefreshHint(failing), getRefreshHint(passing));
+		}
+		return new RadiatorSnapshot(version, System.currentTimeMillis(), refresh, failing,
+				passing, all, false);
+	}
+
+	/**
+	 * @return seconds until the next time some of the entries are expected to
+	 *         change.
+	 */
+	private static int getRefreshHint(Collection<IViewEntry> entries) {
+		int refresh = IDLE_REFRESH;
+		for (IViewEntry entry : entries) {
+			if (entry instanceof ProjectViewEntry) {
+				refresh = Math.min(refresh, getRefreshHint(((ProjectViewEntry) entry).getJobs()));
+			} else if (entry instanceof JobViewEntry) {
+				refresh = Math.min(refresh, getRefreshHint((JobViewEntry) entry));
+			} else if (entry.getBuilding()) {
+				refresh = Math.min(refresh, BUSY_REFRESH);
+			}
+		}
+		return refresh;
+	}
+
+	private static int getRefreshHint(JobViewEntry entry) {
+		if (!entry.getBuilding()) {
+			return entry.getQueued() ? BUSY_REFRESH : IDLE_REFRESH;
+		}
+		long remaining = entry.getEstimatedRemainingTime();
+		if (remaining < 0) {
+			return BUSY_REFRESH;
+		}
+		return (int) Math.max(MIN_REFRESH, Math.min(BUSY_REFRESH, remaining / 1000 + 1));
+	}
+
+	/**
+	 * Hashes what the radiator shows of the entries: the packed state of
+	 * every job, including the members of groups, and the details of the
+	 * tiles showing them. Stable tiles only show details if asked to, so
+	 * their details aren't computed otherwise.
+	 */
+	private long fingerprint(Collection<? extends IViewEntry> entries, long seed) {
+		long hash = seed;
+		for (IViewEntry entry : entries) {
+			hash = hash(hash, entry.getName());
+			if (entry instanceof ProjectViewEntry) {
+				hash = fingerprint(((ProjectViewEntry) entry).getJobs(), hash);
+				continue;
+			}
+			hash = 31 * hash + EntryState.of(entry);
+			if (!entry.getStable() || Boolean.TRUE.equals(showStableDetail)) {
+				hash = hash(hash, entry.getCulprit());
+				hash = hash(hash, entry.getClaim());
+				hash = 31 * hash + entry.getTestCount();
+				hash = 31 * hash + entry.getFailCount();
+				hash = hash(hash, entry.getDiff());
+				hash = hash(hash, entry.getUnclaimedMatrixBuilds());
+			}
+			if (entry instanceof FolderViewEntry) {
+				hash = hash(hash, ((FolderViewEntry) entry).getFailingBranches());
+			}
+			hash = 31 * hash + (entry.isSourceStale() ? 1 : 0);
+		}
+		return 31 * hash + entries.size();
+	}
+
+	private static long hash(long hash, Object value) {
+		return 31 * hash + (value == null ? 0 : value.hashCode());
+	}
+
+	private static int parsePositiveInt(String value, int defaultValue) {
+		try {
+			int i = Integer.parseInt(value);
+			return i > 0 ? i : defaultValue;
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
 	public ProjectViewEntry getContentsByPrefix()
 	{
 		ProjectViewEntry contents = new ProjectViewEntry();
@@ -208,6 +1210,14 @@ public class RadiatorView extends ListView {
 		this.highVis = Boolean.parseBoolean(req.getParameter("highVis"));
 		this.groupByPrefix = Boolean.parseBoolean(req.getParameter("groupByPrefix"));
 		this.showBuildStability = Boolean.parseBoolean(req.getParameter("showBuildStability"));
+		this.compactMode = Boolean.parseBoolean(req.getParameter("compactMode"));
+		this.maxTilesPerPage = parsePositiveInt(req.getParameter("maxTilesPerPage"), 0);
+		this.pageInterval = parsePositiveInt(req.getParameter("pageInterval"), DEFAULT_PAGE_INTERVAL);
+		this.treemapLayout = Boolean.parseBoolean(req.getParameter("treemapLayout"));
+		this.adaptiveRefresh = Boolean.parseBoolean(req.getParameter("adaptiveRefresh"));
+		this.collapseMultibranch = Boolean.parseBoolean(req.getParameter("collapseMultibranch"));
+		this.keepHistory = Boolean.parseBoolean(req.getParameter("keepHistory"));
+		setExportDirectory(req.getParameter("exportDirectory"));
 		this.captionText = req.getParameter("captionText");
 		this.excludeRegex = req.getParameter("excludeRegex");
 		try {
@@ -215,7 +1225,12 @@ public class RadiatorView extends ListView {
 		} catch (NumberFormatException e) {
 			this.captionSize = DEFAULT_CAPTION_SIZE;
 		}
-		
+		// settings may change what is shown, so don't wait for the next period.
+		synchronized (getSnapshotLock()) {
+			this.snapshot = null;
+			this.layouts = null;
+			this.exportedVersion = 0;
+		}
 	}
 
 	public Boolean getShowStable() {
@@ -239,60 +1254,109 @@ public class RadiatorView extends ListView {
 		return showBuildStability;
 	}
 
-	public String getCaptionText() {
-		return captionText;
+	public Boolean getCompactMode() {
+		return compactMode;
 	}
 
-	public Integer getCaptionSize() {
-		return captionSize;
+	public Boolean getAdaptiveRefresh() {
+		return adaptiveRefresh;
 	}
-	
+
+	public Boolean getCollapseMultibranch() {
+		return collapseMultibranch;
+	}
+
+	public Boolean getKeepHistory() {
+		return keepHistory;
+	}
+
 	/**
-	 * Converts a list of jobs to a list of list of jobs, suitable for display
-	 * as rows in a table.
-	 * 
-	 * @param jobs
-	 *            the jobs to include.
-	 * @param failingJobs
-	 *            if this is a list of failing jobs, in which case fewer jobs
-	 *            should be used per row.
-	 * @return a list of fixed size view entry lists.
-	 */
-	public Collection<Collection<IViewEntry>> toRows(Collection<IViewEntry> jobs,
-			Boolean failingJobs) {
-		int jobsPerRow = 1;
-		if (failingJobs.booleanValue()) {
-			if (jobs.size() > 3) {
-				jobsPerRow = 2;
-			}
-			if (jobs.size() > 9) {
-				jobsPerRow = 3;
-			}
-			if (jobs.size() > 15) {
-				jobsPerRow = 4;
-			}
+	 * @return the directory the view's snapshot is exported to, or null if it
+	 *         isn't exported.
+	 */
+	public String getExportDirectory() {
+		return Util.fixEmptyAndTrim(exportDirectory);
+	}
+
+	/**
+	 * @param exportDirectory
+	 *            directory to export the view's snapshot to, or null. Changing
+	 *            it requires Overall/Administer, as files are written with the
+	 *            permissions of Jenkins.
+	 */
+	@DataBoundSetter
+	public void setExportDirectory(String exportDirectory) {
+		exportDirectory = Util.fixEmptyAndTrim(exportDirectory);
+		if (!StringUtils.equals(exportDirectory, getExportDirectory())) {
+			Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
+		}
+		this.exportDirectory = exportDirectory;
+	}
+
+	/**
+	 * Applies a <code>config.xml</code>, once checked that it only changes
+	 * what the user may change.
+	 */
+	@Override
+	public void updateByXml(Source source) throws IOException {
+		checkPermission(CONFIGURE);
+		StringWriter xml = new StringWriter();
+		try {
+			XMLUtils.safeTransform(source, new StreamResult(xml));
+		} catch (TransformerException e) {
+			throw new IOException("Failed to read the configuration", e);
+		} catch (SAXException e) {
+			throw new IOException("Failed to read the configuration", e);
+		}
+		Object posted = Jenkins.XSTREAM.fromXML(xml.toString());
+		if (getClass().isInstance(posted)) {
+			checkAdministered((RadiatorView) posted);
 		} else {
-			// don't mind having more rows as much for passing jobs.
-			jobsPerRow = (int) Math.floor(Math.sqrt(jobs.size()) / 1.5);
+			Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
 		}
-		Collection<Collection<IViewEntry>> rows = new ArrayList<Collection<IViewEntry>>();
-		Collection<IViewEntry> current = null;
-		int i = 0;
-		for (IViewEntry job : jobs) {
-			if (i == 0) {
-				current = new ArrayList<IViewEntry>();
-				rows.add(current);
-			}
-			current.add(job);
-			i++;
-			if (i >= jobsPerRow) {
-				i = 0;
-			}
+		super.updateByXml(new StreamSource(new StringReader(xml.toString())));
+	}
+
+	/**
+	 * Checks that the user may replace the options of this view only
+	 * administrators may change by those of the given configuration.
+	 *
+	 * @param posted
+	 *            the configuration about to be applied.
+	 */
+	void checkAdministered(RadiatorView posted) {
+		if (!StringUtils.equals(posted.getExportDirectory(), getExportDirectory())) {
+			Jenkins.getActiveInstance().checkPermission(Jenkins.ADMINISTER);
 		}
-		return rows;
 	}
 
+	public Boolean getTreemapLayout() {
+		return treemapLayout;
+	}
+
+	public Integer getMaxTilesPerPage() {
+		return maxTilesPerPage;
+	}
+
+	public Integer getPageInterval() {
+		return pageInterval == null ? DEFAULT_PAGE_INTERVAL : pageInterval;
+	}
+
+	/**
+	 * @return <code>true</code> if the view cycles through pages of tiles.
+	 */
+	public boolean isPaged() {
+		return maxTilesPerPage != null && maxTilesPerPage > 0;
+	}
+
+	public String getCaptionText() {
+		return captionText;
+	}
 
+	public Integer getCaptionSize() {
+		return captionSize;
+	}
+	
 	@Extension
 	public static final class DescriptorImpl extends ViewDescriptor {
 		public DescriptorImpl() {
@@ -0,0 +1,145 @@
+package hudson.model;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.json.JSONObject;
+
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+
+/**
+ * Fills the {@link BuildHistory} and {@link RecoveryStats} of every job shown
+ * by a radiator once the jobs are loaded, so that the first displays after a
+ * restart don't wait for their builds to be loaded. Both are kept up to date
+ * as builds finish rather than expiring like {@link JobState}s, which are
+ * then computed from them. Enabled by setting the
+ * <code>hudson.model.RadiatorWarmUp.enabled</code> system property to
+ * <code>true</code>; the work is done by <code>threads</code> low priority
+ * threads (2 by default).
+ */
+public final class RadiatorWarmUp {
+
+	private static final Logger LOGGER = Logger.getLogger(RadiatorWarmUp.class.getName());
+
+	static final boolean ENABLED = Boolean.getBoolean(RadiatorWarmUp.class.getName() + ".enabled");
+
+	static final int THREADS = Math.max(1, Integer.getInteger(RadiatorWarmUp.class.getName() + ".threads", 2));
+
+	private static final AtomicInteger TOTAL = new AtomicInteger();
+
+	private static final AtomicInteger DONE = new AtomicInteger();
+
+	private static final AtomicInteger FAILED = new AtomicInteger();
+
+	private static final AtomicLong STARTED = new AtomicLong();
+
+	private static final AtomicLong FINISHED = new AtomicLong();
+
+	private RadiatorWarmUp() {
+	}
+
+	@Initializer(after = InitMilestone.JOB_LOADED)
+	public static void warmUp() {
+		if (!ENABLED) {
+			return;
+		}
+		Map<String, Job<?, ?>> jobs = new LinkedHashMap<String, Job<?, ?>>();
+		SecurityContext previous = ACL.impersonate(ACL.SYSTEM);
+		try {
+			for (RadiatorView view : RadiatorUtil.getAllRadiatorViews()) {
+				for (Job<?, ?> job : view.getShownJobs()) {
+					jobs.put(job.getFullName(), job);
+				}
+			}
+		} finally {
+			SecurityContextHolder.setContext(previous);
+		}
+		if (jobs.isEmpty()) {
+			return;
+		}
+		LOGGER.log(Level.INFO, "Warming up the radiator state of {0} jobs", jobs.size());
+		STARTED.set(System.currentTimeMillis());
+		TOTAL.set(jobs.size());
+
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 10, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new LowPriorityThreadFactory());
+		pool.allowCoreThreadTimeOut(true);
+		for (Job<?, ?> job : jobs.values()) {
+			pool.execute(new WarmUpTask(job));
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * @return how far the warm-up got, as JSON.
+	 */
+	static JSONObject toJSON() {
+		JSONObject json = new JSONObject();
+		json.put("enabled", ENABLED);
+		json.put("jobs", TOTAL.get());
+		json.put("done", DONE.get());
+		json.put("failed", FAILED.get());
+		long started = STARTED.get();
+		if (started > 0) {
+			long finished = FINISHED.get();
+			json.put("millis", (finished > 0 ? finished : System.currentTimeMillis()) - started);
+			json.put("finished", finished > 0);
+		}
+		return json;
+	}
+
+	private static final class WarmUpTask implements Runnable {
+
+		private final Job<?, ?> job;
+
+		WarmUpTask(Job<?, ?> job) {
+			this.job = job;
+		}
+
+		public void run() {
+			SecurityContext previous = ACL.impersonate(ACL.SYSTEM);
+			try {
+				// what most of a tile is read from, loading the recent builds.
+				BuildHistory.of(job).preload();
+				RecoveryStats.of(job);
+			} catch (RuntimeException e) {
+				FAILED.incrementAndGet();
+				LOGGER.log(Level.FINE, "Failed to warm up " + job.getFullName(), e);
+			} finally {
+				SecurityContextHolder.setContext(previous);
+				if (DONE.incrementAndGet() == TOTAL.get()) {
+					FINISHED.set(System.currentTimeMillis());
+					LOGGER.log(Level.INFO, "Warmed up the radiator state of {0} jobs in {1}ms",
+							new Object[] { TOTAL.get(), FINISHED.get() - STARTED.get() });
+				}
+			}
+		}
+	}
+
+	private static final class LowPriorityThreadFactory implements ThreadFactory {
+
+		private final ThreadFactory delegate = new NamingThreadFactory(new DaemonThreadFactory(),
+				"RadiatorWarmUp");
+
+		public Thread newThread(Runnable r) {
+			Thread t = delegate.newThread(r);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package hudson.model;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * How long a job or a group of jobs has been failing, how long it took on
+ * average to recover and how often it failed, over the last
+ * <code>hudson.model.RecoveryStats.windowDays</code> days (7 by default).
+ * <p>
+ * The figures are kept up to date for each job as its builds finish, starting
+ * from the builds in its {@link BuildHistory}, so showing them never looks at
+ * the job's builds. A job failing since before those builds is counted as
+ * failing since the oldest of them.
+ */
+public final class RecoveryStats {
+
+	static final long WINDOW = Math.max(1, Integer.getInteger(RecoveryStats.class.getName() + ".windowDays", 7))
+			* 24L * 60 * 60 * 1000;
+
+	private static final ConcurrentMap<String, Tracker> TRACKERS = new ConcurrentHashMap<String, Tracker>();
+
+	private final long redSince;
+
+	private final int recoveries;
+
+	private final long recoveryMillis;
+
+	private final int failures;
+
+	private RecoveryStats(long redSince, int recoveries, long recoveryMillis, int failures) {
+		this.redSince = redSince;
+		this.recoveries = recoveries;
+		this.recoveryMillis = recoveryMillis;
+		this.failures = failures;
+	}
+
+	/**
+	 * @return the figures of the job.
+	 */
+	static RecoveryStats of(Job<?, ?> job) {
+		String name = job.getFullName();
+		Tracker tracker = TRACKERS.get(name);
+		if (tracker == null || tracker.job != job) {
+			tracker = new Tracker(job);
+			TRACKERS.put(name, tracker);
+		}
+		return tracker.get();
+	}
+
+	/**
+	 * @return the figures of a group of jobs: failing since the first of them
+	 *         failed, with the recoveries and failures of all of them.
+	 */
+	static RecoveryStats merge(Collection<RecoveryStats> all) {
+		long redSince = 0;
+		int recoveries = 0;
+		long recoveryMillis = 0;
+		int failures = 0;
+		for (RecoveryStats stats : all) {
+			if (stats.redSince > 0 && (redSince == 0 || stats.redSince < redSince)) {
+				redSince = stats.redSince;
+			}
+			recoveries += stats.recoveries;
+			recoveryMillis += stats.recoveryMillis;
+			failures += stats.failures;
+		}
+		return new RecoveryStats(redSince, recoveries, recoveryMillis, failures);
+	}
+
+	/**
+	 * @return <code>true</code> if the job is failing.
+	 */
+	public boolean isRed() {
+		return redSince > 0;
+	}
+
+	/**
+	 * @return how long the job has been failing, or null if it isn't.
+	 */
+	public String getRedDuration() {
+		if (redSince == 0) {
+			return null;
+		}
+		return Util.getTimeSpanString(Math.max(0, System.currentTimeMillis() - redSince));
+	}
+
+	/**
+	 * @return the number of recoveries within the window.
+	 */
+	public int getRecoveries() {
+		return recoveries;
+	}
+
+	/**
+	 * @return the mean time to recovery within the window, or null if the job
+	 *         didn't recover from any failure.
+	 */
+	public String getMeanTimeToRecovery() {
+		if (recoveries == 0) {
+			return null;
+		}
+		return Util.getTimeSpanString(recoveryMillis / recoveries);
+	}
+
+	/**
+	 * @return the number of times the job started failing within the window.
+	 */
+	public int getFailures() {
+		return failures;
+	}
+
+	/**
+	 * @return the length of the window, in days.
+	 */
+	public long getWindowDays() {
+		return WINDOW / (24L * 60 * 60 * 1000);
+	}
+
+	/**
+	 * Running figures of a job, as its builds finish.
+	 */
+	private static final class Tracker {
+
+		private final Job<?, ?> job;
+
+		/**
+		 * Number of the last build counted.
+		 */
+		private long lastNumber;
+
+		/**
+		 * When the first failing build of the current failure finished, 0 if
+		 * the job isn't failing.
+		 */
+		private long redSince;
+
+		/**
+		 * When each recovery within the window happened and how long it took,
+		 * oldest first, and their total.
+		 */
+		private final ArrayDeque<long[]> recoveries = new ArrayDeque<long[]>();
+
+		private long recoveryMillis;
+
+		/**
+		 * When each failure within the window started, oldest first.
+		 */
+		private final ArrayDeque<Long> failures = new ArrayDeque<Long>();
+
+		Tracker(Job<?, ?> job) {
+			this.job = job;
+			for (long[] build : BuildHistory.of(job).getBuilds()) {
+				add(build[0], (int) build[1], build[2] + build[3]);
+			}
+		}
+
+		synchronized void add(long number, int result, long finished) {
+			if (number <= lastNumber) {
+				return;
+			}
+			lastNumber = number;
+			if (result == Result.FAILURE.ordinal) {
+				if (redSince == 0) {
+					redSince = finished;
+					failures.addLast(finished);
+				}
+			} else if (result <= Result.UNSTABLE.ordinal && redSince > 0) {
+				long millis = Math.max(0, finished - redSince);
+				recoveries.addLast(new long[] { finished, millis });
+				recoveryMillis += millis;
+				redSince = 0;
+			}
+		}
+
+		synchronized RecoveryStats get() {
+			long since = System.currentTimeMillis() - WINDOW;
+			while (!recoveries.isEmpty() && recoveries.peekFirst()[0] < since) {
+				recoveryMillis -= recoveries.removeFirst()[1];
+			}
+			while (!failures.isEmpty() && failures.peekFirst() < since) {
+				failures.removeFirst();
+			}
+			return new RecoveryStats(redSince, recoveries.size(), recoveryMillis, failures.size());
+		}
+	}
+
+	/**
+	 * Counts builds as they finish. Deleting a build doesn't undo the failure
+	 * or recovery it was counted as, so the figures are kept.
+	 */
+	@Extension
+	public static final class RunListenerImpl extends RunListener<Run> {
+
+		@Override
+		public void onFinalized(Run run) {
+			Tracker tracker = TRACKERS.get(run.getParent().getFullName());
+			if (tracker != null && run.getResult() != null) {
+				tracker.add(run.getNumber(), run.getResult().ordinal, run.getTimeInMillis() + run.getDuration());
+			}
+		}
+	}
+
+	/**
+	 * Drops the figures of deleted and renamed jobs.
+	 */
+	@Extension
+	public static final class ItemListenerImpl extends ItemListener {
+
+		@Override
+		public void onDeleted(Item item) {
+			TRACKERS.remove(item.getFullName());
+		}
+
+		@Override
+		public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+			TRACKERS.remove(oldFullName);
+		}
+	}
+}
@@ -0,0 +1,343 @@
+package hudson.model;
+
+import hudson.Extension;
+import hudson.ProxyConfiguration;
+import hudson.security.ACL;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+import org.acegisecurity.context.SecurityContext;
+import org.acegisecurity.context.SecurityContextHolder;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A radiator of another controller, read from the <code>radiatorJson</code>
+ * URL of the view. Radiators are fetched in the background every
+ * <code>hudson.model.RemoteRadiator.interval</code> milliseconds (15 seconds
+ * by default), so computing a snapshot never waits for another controller.
+ * The entries of the last successful fetch are kept, so that a controller
+ * which is down or slow still shows its last known state.
+ */
+final class RemoteRadiator {
+
+	private static final Logger LOGGER = Logger.getLogger(RemoteRadiator.class.getName());
+
+	static final long INTERVAL = Long.getLong(RemoteRadiator.class.getName() + ".interval", 15000L);
+
+	/**
+	 * Radiators fetched so far, by view URL.
+	 */
+	private static final ConcurrentMap<String, RemoteRadiator> RADIATORS = new ConcurrentHashMap<String, RemoteRadiator>();
+
+	private static final ExecutorService FETCHERS = Executors.newCachedThreadPool(new NamingThreadFactory(
+			new DaemonThreadFactory(), "RemoteRadiator"));
+
+	/**
+	 * URL of the view, without credentials, as shown on the radiator.
+	 */
+	private final String publicUrl;
+
+	/**
+	 * Short name of the controller, put before the names of its entries.
+	 */
+	private final String label;
+
+	/**
+	 * URL of the controller. The URLs of the entries are relative to it, and
+	 * links to anywhere else are dropped.
+	 */
+	private final String rootUrl;
+
+	private volatile JSONArray entries;
+
+	private volatile long fetched;
+
+	private volatile String error;
+
+	/**
+	 * The fetch in progress, if any, and when it started.
+	 */
+	private Future<?> fetching;
+
+	private long fetchStarted;
+
+	private RemoteRadiator(String viewUrl) {
+		viewUrl = viewUrl.endsWith("/") ? viewUrl : viewUrl + "/";
+		URL url = toURL(viewUrl);
+		if (url != null && url.getUserInfo() != null) {
+			this.publicUrl = viewUrl.replace(url.getUserInfo() + "@", "");
+		} else {
+			this.publicUrl = viewUrl;
+		}
+		this.label = url != null ? url.getHost() : viewUrl;
+		int view = publicUrl.indexOf("/view/");
+		if (view >= 0) {
+			this.rootUrl = publicUrl.substring(0, view + 1);
+		} else if (url != null) {
+			this.rootUrl = url.getProtocol() + "://" + url.getHost()
+					+ (url.getPort() >= 0 ? ":" + url.getPort() : "") + "/";
+		} else {
+			this.rootUrl = publicUrl;
+		}
+	}
+
+	static RemoteRadiator of(String viewUrl) {
+		RemoteRadiator radiator = RADIATORS.get(viewUrl);
+		if (radiator == null) {
+			radiator = new RemoteRadiator(viewUrl);
+			RemoteRadiator previous = RADIATORS.putIfAbsent(viewUrl, radiator);
+			if (previous != null) {
+				radiator = previous;
+			}
+		}
+		return radiator;
+	}
+
+	/**
+	 * Forgets the radiators no view shows anymore.
+	 *
+	 * @param viewUrls
+	 *            URLs of the radiators shown by views.
+	 */
+	static void retainAll(Collection<String> viewUrls) {
+		RADIATORS.keySet().retainAll(viewUrls);
+	}
+
+	/**
+	 * Reads the entries of the radiators as they were last fetched, without
+	 * waiting for any of them.
+	 *
+	 * @param viewUrls
+	 *            URLs of the views to show.
+	 * @param colors
+	 *            colors of the view showing the entries.
+	 * @return the entries of the radiators.
+	 */
+	static List<IViewEntry> getEntries(List<String> viewUrls, ViewEntryColors colors) {
+		List<IViewEntry> entries = new ArrayList<IViewEntry>();
+		for (String viewUrl : viewUrls) {
+			of(viewUrl).addEntries(entries, colors);
+		}
+		return entries;
+	}
+
+	/**
+	 * Starts fetching the radiator in the background, unless a fetch started
+	 * less than the timeout ago is still running. Radiators which fail or
+	 * don't answer in time keep the entries they were last fetched with.
+	 *
+	 * @param timeout
+	 *            seconds to wait for the radiator.
+	 * @param credentials
+	 *            user and API token to fetch the radiator with, as
+	 *            <code>user:token</code>, or null.
+	 * @return the fetch.
+	 */
+	synchronized Future<?> fetch(final int timeout, final String credentials) {
+		if (fetching != null && !fetching.isDone()) {
+			if (System.currentTimeMillis() - fetchStarted < timeout * 1000L) {
+				return fetching;
+			}
+			// the read timeout doesn't bound an answer trickling in.
+			fetching.cancel(true);
+			failed("timed out after " + timeout + "s", null);
+		}
+		fetchStarted = System.currentTimeMillis();
+		fetching = FETCHERS.submit(new Runnable() {
+			public void run() {
+				try {
+					JSONArray answer = read(timeout, credentials);
+					entries = answer;
+					fetched = System.currentTimeMillis();
+					error = null;
+				} catch (SocketTimeoutException e) {
+					failed("timed out after " + timeout + "s", null);
+				} catch (IOException e) {
+					failed(String.valueOf(e), e);
+				}
+			}
+		});
+		return fetching;
+	}
+
+	private void failed(String error, Throwable cause) {
+		this.error = error;
+		LOGGER.log(Level.FINE, "Failed to fetch the radiator at " + publicUrl + ": " + error, cause);
+	}
+
+	private JSONArray read(int timeout, String credentials) throws IOException {
+		URL url = new URL(publicUrl + "radiatorJson");
+		if (!"http".equals(url.getProtocol()) && !"https".equals(url.getProtocol())) {
+			throw new IOException("Not an http(s) URL: " + publicUrl);
+		}
+		URLConnection connection = ProxyConfiguration.open(url);
+		connection.setConnectTimeout(timeout * 1000);
+		connection.setReadTimeout(timeout * 1000);
+		if (credentials != null) {
+			// for controllers without anonymous access.
+			connection.setRequestProperty("Authorization",
+					"Basic " + Base64.encodeBase64String(credentials.getBytes("UTF-8")).trim());
+		}
+		InputStream in = connection.getInputStream();
+		try {
+			JSONObject json = JSONObject.fromObject(IOUtils.toString(in, "UTF-8"));
+			JSONArray entries = new JSONArray();
+			entries.addAll(json.getJSONArray("failing"));
+			entries.addAll(json.getJSONArray("passing"));
+			return entries;
+		} catch (JSONException e) {
+			throw new IOException("Unexpected answer from " + publicUrl, e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Adds the entries of the last successful fetch, if any, bound to this
+	 * controller. They are marked stale if the last fetch failed, or if none
+	 * succeeded for a few intervals.
+	 */
+	private void addEntries(List<IViewEntry> result, ViewEntryColors colors) {
+		JSONArray entries = this.entries;
+		if (entries == null) {
+			return;
+		}
+		boolean stale = error != null || System.currentTimeMillis() - fetched > 3 * INTERVAL;
+		for (int i = 0; i < entries.size(); i++) {
+			JSONObject json = JSONObject.fromObject(entries.getJSONObject(i));
+			int palette;
+			if (json.optBoolean("broken")) {
+				palette = EntryState.BROKEN;
+			} else if (json.optBoolean("stable")) {
+				palette = EntryState.SUCCESS;
+			} else if ("never built".equals(json.optString("status"))) {
+				palette = EntryState.NOT_BUILT;
+			} else {
+				palette = EntryState.UNSTABLE;
+			}
+			// only what a radiator's JSON holds is kept.
+			json.remove("state");
+			json.remove("jobs");
+			json.put("name", label + ": " + json.getString("name"));
+			json.put("url", toSafeUrl(optString(json, "url")));
+			json.put("lastBuildUrl", toSafeUrl(optString(json, "lastBuildUrl")));
+			json.put("backgroundColor", colors.getBackground(palette));
+			json.put("color", colors.getForeground(palette));
+			json.put("notBuilt", palette == EntryState.NOT_BUILT);
+			json.put("source", publicUrl);
+			json.put("sourceStale", stale);
+			result.add(new StoredViewEntry(json));
+		}
+	}
+
+	private static String optString(JSONObject json, String key) {
+		Object value = json.opt(key);
+		return value instanceof String ? (String) value : null;
+	}
+
+	/**
+	 * @param url
+	 *            URL of an entry, as given by the remote radiator.
+	 * @return the URL made absolute, if it is an http(s) URL of the remote
+	 *         controller, or null. Radiators link to the URLs of their
+	 *         entries, which must not lead anywhere else, let alone to
+	 *         scripts.
+	 */
+	String toSafeUrl(String url) {
+		if (url == null || url.length() == 0) {
+			return null;
+		}
+		try {
+			URI resolved = new URI(rootUrl).resolve(url);
+			String scheme = resolved.getScheme();
+			if (!"http".equalsIgnoreCase(scheme) && !"https".equalsIgnoreCase(scheme)) {
+				return null;
+			}
+			String absolute = resolved.toString();
+			return resolved.getRawUserInfo() == null && absolute.startsWith(rootUrl) ? absolute : null;
+		} catch (URISyntaxException e) {
+			return null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the state of each radiator fetched so far, as JSON.
+	 */
+	static JSONArray toJSON() {
+		JSONArray array = new JSONArray();
+		for (RemoteRadiator radiator : RADIATORS.values()) {
+			JSONObject json = new JSONObject();
+			json.put("url", radiator.publicUrl);
+			json.put("entries", radiator.entries == null ? 0 : radiator.entries.size());
+			json.put("fetched", radiator.fetched);
+			json.put("error", radiator.error);
+			array.add(json);
+		}
+		return array;
+	}
+
+	/**
+	 * Fetches the radiators shown by federated views, and forgets the others.
+	 */
+	@Extension
+	public static final class FetchWork extends PeriodicWork {
+
+		@Override
+		public long getRecurrencePeriod() {
+			return INTERVAL;
+		}
+
+		@Override
+		protected void doRun() {
+			Set<String> urls = new HashSet<String>();
+			SecurityContext previous = ACL.impersonate(ACL.SYSTEM);
+			try {
+				for (RadiatorView view : RadiatorUtil.getAllRadiatorViews()) {
+					if (view instanceof FederatedRadiatorView) {
+						FederatedRadiatorView federated = (FederatedRadiatorView) view;
+						federated.fetchRemoteRadiators();
+						urls.addAll(federated.getRemoteViewUrls());
+					}
+				}
+			} finally {
+				SecurityContextHolder.setContext(previous);
+			}
+			retainAll(urls);
+		}
+	}
+
+	private static URL toURL(String url) {
+		try {
+			return new URL(url);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,374 @@
+package hudson.model;
+
+import hudson.plugins.claim.ClaimBuildAction;
+import hudson.tasks.test.AbstractTestResultAction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counts the work done to render a radiator: entries scanned, builds
+ * dereferenced and actions looked up. Counting only happens on threads which
+ * called {@link #begin()}, and is a single thread local lookup otherwise.
+ * <p>
+ * Renders going over the budgets set by the
+ * <code>hudson.model.RenderStats.maxRunsPerEntry</code>,
+ * <code>maxActionLookupsPerEntry</code> and <code>maxRenderMillis</code>
+ * system properties are logged, which catches changes that make each render
+ * load the whole build history again.
+ */
+final class RenderStats {
+
+	/**
+	 * The parts of an entry's rendering which are timed when profiling.
+	 */
+	enum Phase {
+		STATUS, CULPRITS, CLAIMS, TESTS, QUEUE
+	}
+
+	private static final Logger LOGGER = Logger.getLogger(RenderStats.class.getName());
+
+	static final int MAX_RUNS_PER_ENTRY = Integer.getInteger(RenderStats.class.getName() + ".maxRunsPerEntry", 25);
+
+	static final int MAX_ACTION_LOOKUPS_PER_ENTRY = Integer.getInteger(RenderStats.class.getName() + ".maxActionLookupsPerEntry", 25);
+
+	static final long MAX_RENDER_MILLIS = Long.getLong(RenderStats.class.getName() + ".maxRenderMillis", 5000L);
+
+	/**
+	 * Minimum delay between two warnings about the same view going over
+	 * budget.
+	 */
+	private static final long WARNING_INTERVAL = 10 * 60 * 1000L;
+
+	private static final ThreadLocal<RenderStats> CURRENT = new ThreadLocal<RenderStats>();
+
+	private static final ConcurrentMap<String, Long> LAST_WARNINGS = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * Number of renders currently being profiled.
+	 */
+	private static final AtomicInteger PROFILING = new AtomicInteger();
+
+	private final long start = System.nanoTime();
+
+	private long duration = -1;
+
+	private int entries;
+
+	private int rendered;
+
+	private int folders;
+
+	private int runs;
+
+	private int actionLookups;
+
+	private int testLookups;
+
+	private int claimLookups;
+
+	/**
+	 * Nanoseconds spent in each phase, by entry name. Null unless profiling.
+	 */
+	private final Map<String, long[]> profile;
+
+	private RenderStats(boolean profile) {
+		this.profile = profile ? new HashMap<String, long[]>() : null;
+	}
+
+	/**
+	 * Starts counting on the current thread.
+	 *
+	 * @return the counters, which are also returned by {@link #end()}.
+	 */
+	static RenderStats begin() {
+		return begin(false);
+	}
+
+	/**
+	 * Starts counting on the current thread.
+	 *
+	 * @param profile
+	 *            whether to also time each entry's phases.
+	 * @return the counters, which are also returned by {@link #end()}.
+	 */
+	static RenderStats begin(boolean profile) {
+		RenderStats stats = new RenderStats(profile);
+		if (profile) {
+			PROFILING.incrementAndGet();
+		}
+		CURRENT.set(stats);
+		return stats;
+	}
+
+	/**
+	 * Stops counting on the current thread.
+	 *
+	 * @return the counters, or null if counting hadn't started.
+	 */
+	static RenderStats end() {
+		RenderStats stats = CURRENT.get();
+		CURRENT.remove();
+		if (stats != null) {
+			stats.duration = System.nanoTime() - stats.start;
+			if (stats.profile != null) {
+				PROFILING.decrementAndGet();
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * @return <code>true</code> if the current thread's render is profiled.
+	 */
+	static boolean isProfiling() {
+		if (PROFILING.get() == 0) {
+			return false;
+		}
+		RenderStats stats = CURRENT.get();
+		return stats != null && stats.profile != null;
+	}
+
+	/**
+	 * Starts timing a phase.
+	 *
+	 * @return the value to give to {@link #phaseEnd}, 0 when not profiling.
+	 */
+	static long phaseStart() {
+		return isProfiling() ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the time spent on a phase of an entry since
+	 * {@link #phaseStart()}.
+	 *
+	 * @param name
+	 *            the full name of the entry.
+	 */
+	static void phaseEnd(long start, String name, Phase phase) {
+		if (start == 0) {
+			return;
+		}
+		RenderStats stats = CURRENT.get();
+		if (stats == null || stats.profile == null) {
+			return;
+		}
+		long[] times = stats.profile.get(name);
+		if (times == null) {
+			times = new long[Phase.values().length];
+			stats.profile.put(name, times);
+		}
+		times[phase.ordinal()] += System.nanoTime() - start;
+	}
+
+	/**
+	 * @param max
+	 *            maximum number of entries to return.
+	 * @return the entries which took the longest to render, slowest first.
+	 */
+	List<EntryProfile> getSlowestEntries(int max) {
+		List<EntryProfile> entries = new ArrayList<EntryProfile>();
+		if (profile == null) {
+			return entries;
+		}
+		for (Map.Entry<String, long[]> entry : profile.entrySet()) {
+			entries.add(new EntryProfile(entry.getKey(), entry.getValue()));
+		}
+		Collections.sort(entries);
+		return entries.subList(0, Math.min(max, entries.size()));
+	}
+
+	/**
+	 * @return the stats of the current thread's render, or null.
+	 */
+	static RenderStats current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Counts a build dereferenced by the radiator.
+	 *
+	 * @return the given build.
+	 */
+	static <R extends Run> R run(R run) {
+		RenderStats stats = CURRENT.get();
+		if (stats != null && run != null) {
+			stats.runs++;
+		}
+		return run;
+	}
+
+	/**
+	 * Looks up the test results of a build, counting the lookup.
+	 */
+	static AbstractTestResultAction<?> testResults(Run<?, ?> run) {
+		RenderStats stats = CURRENT.get();
+		if (stats != null) {
+			stats.actionLookups++;
+			stats.testLookups++;
+		}
+		return run.getAction(AbstractTestResultAction.class);
+	}
+
+	/**
+	 * Looks up the claims of a build, counting the lookup.
+	 */
+	static List<ClaimBuildAction> claims(Run<?, ?> run) {
+		RenderStats stats = CURRENT.get();
+		if (stats != null) {
+			stats.actionLookups++;
+			stats.claimLookups++;
+		}
+		return run.getActions(ClaimBuildAction.class);
+	}
+
+	static void entryScanned() {
+		RenderStats stats = CURRENT.get();
+		if (stats != null) {
+			stats.entries++;
+		}
+	}
+
+	static void folderTraversed() {
+		RenderStats stats = CURRENT.get();
+		if (stats != null) {
+			stats.folders++;
+		}
+	}
+
+	long getDurationMillis() {
+		return (duration < 0 ? System.nanoTime() - start : duration) / 1000000L;
+	}
+
+	int getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @param tiles
+	 *            number of tiles the render produces.
+	 */
+	static void rendered(int tiles) {
+		RenderStats stats = CURRENT.get();
+		if (stats != null) {
+			stats.rendered = tiles;
+		}
+	}
+
+	int getRendered() {
+		return rendered;
+	}
+
+	int getFolders() {
+		return folders;
+	}
+
+	int getRuns() {
+		return runs;
+	}
+
+	int getActionLookups() {
+		return actionLookups;
+	}
+
+	int getTestLookups() {
+		return testLookups;
+	}
+
+	int getClaimLookups() {
+		return claimLookups;
+	}
+
+	/**
+	 * @return <code>true</code> if this render stayed within its budgets.
+	 */
+	boolean isWithinBudget() {
+		int perEntry = Math.max(1, Math.max(entries, rendered));
+		return runs <= (long) MAX_RUNS_PER_ENTRY * perEntry
+				&& actionLookups <= (long) MAX_ACTION_LOOKUPS_PER_ENTRY * perEntry
+				&& getDurationMillis() <= MAX_RENDER_MILLIS;
+	}
+
+	void log(String viewName) {
+		Level level = Level.FINE;
+		if (!isWithinBudget()) {
+			long now = System.currentTimeMillis();
+			Long last = LAST_WARNINGS.get(viewName);
+			if (last == null || now - last > WARNING_INTERVAL) {
+				LAST_WARNINGS.put(viewName, now);
+				level = Level.WARNING;
+			}
+		}
+		if (LOGGER.isLoggable(level)) {
+			LOGGER.log(level, "Radiator {0} rendered {1} tiles in {2}ms: {3} entries scanned, {4} folders, {5} builds, {6} action lookups",
+					new Object[] { viewName, rendered, getDurationMillis(), entries, folders, runs, actionLookups });
+		}
+	}
+
+	/**
+	 * Time spent on each phase of an entry, in milliseconds.
+	 */
+	public static final class EntryProfile implements Comparable<EntryProfile> {
+
+		private final String name;
+
+		private final long[] times;
+
+		private final long total;
+
+		EntryProfile(String name, long[] times) {
+			this.name = name;
+			this.times = times;
+			long sum = 0;
+			for (long time : times) {
+				sum += time;
+			}
+			this.total = sum;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getTotal() {
+			return millis(total);
+		}
+
+		public String getStatus() {
+			return millis(times[Phase.STATUS.ordinal()]);
+		}
+
+		public String getCulprits() {
+			return millis(times[Phase.CULPRITS.ordinal()]);
+		}
+
+		public String getClaims() {
+			return millis(times[Phase.CLAIMS.ordinal()]);
+		}
+
+		public String getTests() {
+			return millis(times[Phase.TESTS.ordinal()]);
+		}
+
+		public String getQueue() {
+			return millis(times[Phase.QUEUE.ordinal()]);
+		}
+
+		public int compareTo(EntryProfile o) {
+			return total < o.total ? 1 : (total == o.total ? name.compareTo(o.name) : -1);
+		}
+
+		private static String millis(long nanos) {
+			return String.format(Locale.ROOT, "%.1f", nanos / 1000000.0);
+		}
+	}
+}
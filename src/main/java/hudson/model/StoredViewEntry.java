@@ -0,0 +1,392 @@
+package hudson.model;
+
+import hudson.Functions;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+
+/**
+ * An entry as it was shown by a radiator, read back from a saved
+ * {@link RadiatorSnapshot} rather than from the job itself. Entries which
+ * grouped other jobs are shown as a single tile.
+ */
+public class StoredViewEntry implements IViewEntry {
+
+	private final String name;
+
+	private final String url;
+
+	private final String lastBuildUrl;
+
+	private final String status;
+
+	private final String backgroundColor;
+
+	private final String color;
+
+	private final boolean broken;
+
+	private final boolean building;
+
+	private final boolean stable;
+
+	private final boolean notBuilt;
+
+	private final boolean claimed;
+
+	private final boolean completelyClaimed;
+
+	private final String claim;
+
+	private final String unclaimedMatrixBuilds;
+
+	private final String culprit;
+
+	private final int testCount;
+
+	private final int failCount;
+
+	private final String diff;
+
+	private final String lastStableBuild;
+
+	private final String lastCompletedBuild;
+
+	private final Result lastFinishedResult;
+
+	/**
+	 * URL of the radiator of another controller showing the entry, and
+	 * whether it could not be fetched lately, or null for local entries.
+	 */
+	private final String source;
+
+	private final boolean sourceStale;
+
+	/**
+	 * Full names of the jobs grouped by this entry, for groups saved by
+	 * versions which didn't save their jobs' details.
+	 */
+	private final List<String> jobNames;
+
+	/**
+	 * @param json
+	 *            an entry written by {@link #toJSON(IViewEntry)}.
+	 */
+	StoredViewEntry(JSONObject json) {
+		this.name = json.getString("name");
+		this.url = optString(json, "url");
+		this.lastBuildUrl = optString(json, "lastBuildUrl");
+		this.backgroundColor = optString(json, "backgroundColor");
+		this.color = optString(json, "color");
+		this.completelyClaimed = json.optBoolean("completelyClaimed");
+		if (json.has("state")) {
+			// jobs are saved as their packed state.
+			byte state = (byte) json.getInt("state");
+			this.broken = EntryState.status(state) == EntryState.BROKEN;
+			this.building = EntryState.isBuilding(state);
+			this.stable = EntryState.status(state) == EntryState.SUCCESS;
+			this.notBuilt = EntryState.status(state) == EntryState.NOT_BUILT;
+			this.claimed = EntryState.isClaimed(state);
+		} else {
+			this.broken = json.optBoolean("broken");
+			this.building = json.optBoolean("building");
+			this.stable = json.optBoolean("stable");
+			this.notBuilt = json.optBoolean("notBuilt");
+			this.claimed = json.optBoolean("claimed");
+		}
+		this.status = json.optString("status", getStatus(notBuilt, stable, completelyClaimed, broken));
+		this.claim = optString(json, "claim");
+		this.unclaimedMatrixBuilds = json.optString("unclaimedMatrixBuilds", "");
+		this.culprit = json.optString("culprit", " - ");
+		this.testCount = json.optInt("testCount");
+		this.failCount = json.optInt("failCount");
+		this.diff = json.optString("diff", "");
+		this.lastStableBuild = optString(json, "lastStableBuild");
+		this.lastCompletedBuild = optString(json, "lastCompletedBuild");
+		String result = optString(json, "lastFinishedResult");
+		this.lastFinishedResult = result == null ? null : Result.fromString(result);
+		this.source = optString(json, "source");
+		this.sourceStale = json.optBoolean("sourceStale");
+		JSONArray jobs = json.optJSONArray("jobs");
+		List<String> names = new ArrayList<String>();
+		if (jobs != null) {
+			for (int i = 0; i < jobs.size(); i++) {
+				names.add(jobs.getString(i));
+			}
+		}
+		this.jobNames = Collections.unmodifiableList(names);
+	}
+
+	/**
+	 * @return the status of an entry, as {@link JobViewEntry#getStatus()}
+	 *         words it.
+	 */
+	private static String getStatus(boolean notBuilt, boolean stable, boolean completelyClaimed, boolean broken) {
+		if (notBuilt) {
+			return "never built";
+		}
+		if (stable) {
+			return "successful";
+		}
+		if (completelyClaimed) {
+			return "claimed";
+		}
+		return broken ? "failing" : "unstable";
+	}
+
+	/**
+	 * @param entry
+	 *            an entry shown by a radiator.
+	 * @return what is needed to show the entry again as a
+	 *         {@link StoredViewEntry}, or for groups as a
+	 *         {@link ProjectViewEntry} of them. Jobs only write the values
+	 *         computed so far.
+	 */
+	static JSONObject toJSON(IViewEntry entry) {
+		if (entry instanceof JobViewEntry) {
+			return ((JobViewEntry) entry).toStoredJSON();
+		}
+		if (entry instanceof ProjectViewEntry) {
+			JSONObject json = new JSONObject();
+			json.put("name", entry.getName());
+			JSONArray jobs = new JSONArray();
+			for (IViewEntry job : ((ProjectViewEntry) entry).getJobs()) {
+				jobs.add(toJSON(job));
+			}
+			json.put("jobs", jobs);
+			return json;
+		}
+		JSONObject json = new JSONObject();
+		json.put("name", entry.getName());
+		json.put("url", entry.getUrl());
+		json.put("status", entry.getStatus());
+		json.put("backgroundColor", entry.getBackgroundColor());
+		json.put("color", entry.getColor());
+		json.put("broken", entry.getBroken());
+		json.put("building", entry.getBuilding());
+		json.put("stable", entry.getStable());
+		json.put("claimed", entry.isClaimed());
+		json.put("claim", entry.getClaim());
+		json.put("culprit", entry.getCulprit());
+		json.put("testCount", entry.getTestCount());
+		json.put("failCount", entry.getFailCount());
+		if (entry.getSource() != null) {
+			json.put("source", entry.getSource());
+		}
+		if (entry.hasChildren()) {
+			// groups don't support the remaining details.
+			return json;
+		}
+		json.put("notBuilt", entry.isNotBuilt());
+		json.put("completelyClaimed", entry.isCompletelyClaimed());
+		json.put("unclaimedMatrixBuilds", entry.getUnclaimedMatrixBuilds());
+		json.put("diff", entry.getDiff());
+		json.put("lastStableBuild", entry.getLastStableBuild());
+		json.put("lastCompletedBuild", entry.getLastCompletedBuild());
+		if (entry.getLastFinishedResult() != null) {
+			json.put("lastFinishedResult", entry.getLastFinishedResult().toString());
+		}
+		if (entry instanceof StoredViewEntry) {
+			json.put("lastBuildUrl", ((StoredViewEntry) entry).getLastBuildUrl());
+		}
+		return json;
+	}
+
+	private static String optString(JSONObject json, String key) {
+		Object value = json.opt(key);
+		if (value == null || value instanceof JSONNull) {
+			return null;
+		}
+		return value.toString();
+	}
+
+	/**
+	 * @return null, as stored entries aren't bound to a job.
+	 */
+	public Job<?, ?> getJob() {
+		return null;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return false, as the queue isn't stored.
+	 */
+	public Boolean getQueued() {
+		return false;
+	}
+
+	public Integer getQueueNumber() {
+		return null;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public String getBackgroundColor() {
+		return backgroundColor;
+	}
+
+	public String getColor() {
+		return color;
+	}
+
+	public Boolean getBroken() {
+		return broken;
+	}
+
+	public Boolean getBuilding() {
+		return building;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public String getLastBuildUrl() {
+		return lastBuildUrl != null ? lastBuildUrl : url;
+	}
+
+	/**
+	 * @return no builds, as their progress isn't stored.
+	 */
+	public List<Run<?, ?>> getBuildsInProgress() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * @return no progress, as builds in progress aren't stored.
+	 */
+	public List<BuildProgress> getProgress() {
+		return Collections.emptyList();
+	}
+
+	public int getTestCount() {
+		return testCount;
+	}
+
+	public int getFailCount() {
+		return failCount;
+	}
+
+	public int getSuccessCount() {
+		return testCount - failCount;
+	}
+
+	public String getDiff() {
+		return diff;
+	}
+
+	public String getCulprit() {
+		return culprit;
+	}
+
+	public Collection<String> getCulprits() {
+		if (" - ".equals(culprit)) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(culprit.split(", "));
+	}
+
+	public String getDiffColor() {
+		String diff = this.diff.trim();
+		if (diff.length() > 0 && !Functions.getDiffString(0).equals(diff)) {
+			if (diff.startsWith("-")) {
+				return "#FF0000";
+			} else {
+				return "#00FF00";
+			}
+		}
+		return "#FFFFFF";
+	}
+
+	public String getSuccessPercentage() {
+		if (testCount > 0) {
+			Double perc = getSuccessCount() / (testCount * 1D);
+			return NumberFormat.getPercentInstance().format(perc);
+		}
+		return "";
+	}
+
+	public String getLastCompletedBuild() {
+		return lastCompletedBuild;
+	}
+
+	public String getLastStableBuild() {
+		return lastStableBuild;
+	}
+
+	public boolean getStable() {
+		return stable;
+	}
+
+	public String getClaim() {
+		return claim;
+	}
+
+	public String getUnclaimedMatrixBuilds() {
+		return unclaimedMatrixBuilds;
+	}
+
+	public Result getLastFinishedResult() {
+		return lastFinishedResult;
+	}
+
+	/**
+	 * @return the full names of the jobs grouped by this entry, or an empty
+	 *         list if it isn't a group.
+	 */
+	public List<String> getJobNames() {
+		return jobNames;
+	}
+
+	/**
+	 * @return the URL of the remote radiator showing the entry, whose URLs are
+	 *         then absolute, or null if the entry is local.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * @return <code>true</code> if the remote radiator showing the entry
+	 *         could not be fetched lately.
+	 */
+	public boolean isSourceStale() {
+		return sourceStale;
+	}
+
+	/**
+	 * @return false, groups being stored as a single entry.
+	 */
+	public boolean hasChildren() {
+		return false;
+	}
+
+	public boolean isClaimed() {
+		return claimed;
+	}
+
+	public boolean isCompletelyClaimed() {
+		return completelyClaimed;
+	}
+
+	public boolean isNotBuilt() {
+		return notBuilt;
+	}
+
+	public boolean isFolder() {
+		return false;
+	}
+}
@@ -0,0 +1,95 @@
+package hudson.model;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.listeners.SaveableListener;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Names of the users shown as culprits and claimants, by user id, so that
+ * radiators don't go through the user registry, which may load users from
+ * disk, for every tile. The least recently used names are evicted once
+ * <code>hudson.model.UserNameCache.size</code> users (1000 by default) are
+ * cached, and a user's name is forgotten when their configuration is saved.
+ */
+final class UserNameCache {
+
+	static final int SIZE = Math.max(1, Integer.getInteger(UserNameCache.class.getName() + ".size", 1000));
+
+	private static final Map<String, String> NAMES = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > SIZE;
+		}
+	};
+
+	private UserNameCache() {
+	}
+
+	/**
+	 * @param id
+	 *            a user id.
+	 * @return the user's full name, or the id if there is no such user.
+	 */
+	static String getFullName(String id) {
+		String name = get(id);
+		if (name == null) {
+			User user = User.get(id, false, Collections.emptyMap());
+			name = user != null ? user.getFullName() : id;
+			put(id, name);
+		}
+		return name;
+	}
+
+	/**
+	 * @param user
+	 *            a user already looked up.
+	 * @return the user's full name.
+	 */
+	static String getFullName(User user) {
+		String name = get(user.getId());
+		if (name == null) {
+			name = user.getFullName();
+			put(user.getId(), name);
+		}
+		return name;
+	}
+
+	private static String get(String id) {
+		synchronized (NAMES) {
+			return NAMES.get(id);
+		}
+	}
+
+	private static void put(String id, String name) {
+		synchronized (NAMES) {
+			NAMES.put(id, name);
+		}
+	}
+
+	static void invalidate(String id) {
+		synchronized (NAMES) {
+			NAMES.remove(id);
+		}
+	}
+
+	/**
+	 * Forgets the name of users whose configuration changes.
+	 */
+	@Extension
+	public static final class SaveableListenerImpl extends SaveableListener {
+
+		@Override
+		public void onChange(Saveable o, XmlFile file) {
+			if (o instanceof User) {
+				invalidate(((User) o).getId());
+			}
+		}
+	}
+}
@@ -115,6 +115,46 @@ public final class ViewEntryColors
         return otherFG;
     }
 
+    /**
+     * @param palette
+     *            the status of an entry, as given by {@link EntryState#status(byte)}
+     * @return the background color for entries with that status
+     */
+    public String getBackground(int palette)
+    {
+        switch (palette)
+        {
+        case EntryState.SUCCESS:
+            return okBG;
+        case EntryState.UNSTABLE:
+            return failedBG;
+        case EntryState.BROKEN:
+            return brokenBG;
+        default:
+            return otherBG;
+        }
+    }
+
+    /**
+     * @param palette
+     *            the status of an entry, as given by {@link EntryState#status(byte)}
+     * @return the foreground color for entries with that status
+     */
+    public String getForeground(int palette)
+    {
+        switch (palette)
+        {
+        case EntryState.SUCCESS:
+            return okFG;
+        case EntryState.UNSTABLE:
+            return failedFG;
+        case EntryState.BROKEN:
+            return brokenFG;
+        default:
+            return otherFG;
+        }
+    }
+
     public static final ViewEntryColors DEFAULT = new ViewEntryColors("#88ff88", "black", "yellow", "black",
             "red", "white", "#CCCCCC", "#FFFFFF");
 }
\ No newline at end of file
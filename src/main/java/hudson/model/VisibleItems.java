@@ -0,0 +1,157 @@
+package hudson.model;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import jenkins.model.Jenkins;
+
+/**
+ * The jobs a user may see, used to filter the radiator snapshots which are
+ * computed once for everybody. Each user's answers are kept for
+ * <code>hudson.model.VisibleItems.ttl</code> milliseconds, and forgotten
+ * whenever the global or an item's configuration, which holds permissions,
+ * changes.
+ */
+final class VisibleItems {
+
+	static final long TTL = Long.getLong(VisibleItems.class.getName() + ".ttl", 60 * 1000L);
+
+	private static final ConcurrentMap<String, VisibleItems> CACHE = new ConcurrentHashMap<String, VisibleItems>();
+
+	private final long created;
+
+	private final ConcurrentMap<String, Boolean> visible;
+
+	/**
+	 * Whether the entries of remote radiators are shown.
+	 */
+	private final boolean remote;
+
+	private VisibleItems() {
+		this(System.currentTimeMillis(), new ConcurrentHashMap<String, Boolean>(), false);
+	}
+
+	private VisibleItems(long created, ConcurrentMap<String, Boolean> visible, boolean remote) {
+		this.created = created;
+		this.visible = visible;
+		this.remote = remote;
+	}
+
+	/**
+	 * @return the jobs the current user may see.
+	 */
+	static VisibleItems forCurrentUser() {
+		String user = Jenkins.getAuthentication().getName();
+		long now = System.currentTimeMillis();
+		VisibleItems items = CACHE.get(user);
+		if (items == null || now - items.created > TTL) {
+			for (Iterator<VisibleItems> it = CACHE.values().iterator(); it.hasNext();) {
+				if (now - it.next().created > TTL) {
+					it.remove();
+				}
+			}
+			items = new VisibleItems();
+			CACHE.put(user, items);
+		}
+		return items;
+	}
+
+	/**
+	 * @return the same items, along with the entries of remote radiators.
+	 *         Remote controllers apply permissions this one doesn't know, so
+	 *         their entries are hidden unless the view shows them to the user.
+	 */
+	VisibleItems withRemoteEntries() {
+		return remote ? this : new VisibleItems(created, visible, true);
+	}
+
+	/**
+	 * Must be called with the permissions of the user these items are for.
+	 *
+	 * @param entry
+	 *            an entry of a snapshot.
+	 * @return <code>true</code> if the user may see the entry, or one of the
+	 *         jobs it groups, which are then filtered one by one.
+	 */
+	boolean canSee(IViewEntry entry) {
+		if (entry instanceof ProjectViewEntry) {
+			for (IViewEntry job : ((ProjectViewEntry) entry).getJobs()) {
+				if (canSee(job)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (entry.getSource() != null) {
+			return remote;
+		}
+		if (entry instanceof StoredViewEntry && !((StoredViewEntry) entry).getJobNames().isEmpty()) {
+			// groups saved without their jobs' details can't be split, so
+			// they are only shown to users who may see all of their jobs.
+			for (String name : ((StoredViewEntry) entry).getJobNames()) {
+				if (!canSee(name)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return canSee(entry.getName());
+	}
+
+	private boolean canSee(String fullName) {
+		Boolean canSee = visible.get(fullName);
+		if (canSee == null) {
+			// only finds items the user may read.
+			canSee = Jenkins.getActiveInstance().getItemByFullName(fullName, Item.class) != null;
+			visible.put(fullName, canSee);
+		}
+		return canSee;
+	}
+
+	static void invalidateAll() {
+		CACHE.clear();
+	}
+
+	/**
+	 * Forgets what users may see when items are added, moved or removed.
+	 */
+	@Extension
+	public static final class ItemListenerImpl extends ItemListener {
+
+		@Override
+		public void onCreated(Item item) {
+			invalidateAll();
+		}
+
+		@Override
+		public void onDeleted(Item item) {
+			invalidateAll();
+		}
+
+		@Override
+		public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * Forgets what users may see when the global configuration or an item's
+	 * configuration, where permissions are set, is saved.
+	 */
+	@Extension
+	public static final class SaveableListenerImpl extends SaveableListener {
+
+		@Override
+		public void onChange(Saveable o, XmlFile file) {
+			if (o instanceof Jenkins || o instanceof Item) {
+				invalidateAll();
+			}
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Updates the progress of the builds shown on a radiator between two page
+ * refreshes, from the view's radiatorProgress URL.
+ */
+(function() {
+	var script = document.getElementById("radiator-progress");
+	if (!script || !window.XMLHttpRequest) {
+		return;
+	}
+	var url = script.getAttribute("data-url");
+	var interval = parseInt(script.getAttribute("data-interval"), 10) * 1000;
+
+	function text(element, selector, value) {
+		var target = element.querySelector(selector);
+		if (target) {
+			target.textContent = value;
+		}
+	}
+
+	function update(builds) {
+		var elements = document.querySelectorAll(".progress[data-build]");
+		for (var i = 0; i < elements.length; i++) {
+			var build = builds[elements[i].getAttribute("data-build")];
+			if (build) {
+				text(elements[i], ".percent", build.progress);
+				text(elements[i], ".remaining", build.remaining);
+			}
+		}
+	}
+
+	function poll() {
+		if (document.querySelector(".progress[data-build]") == null) {
+			return;
+		}
+		var request = new XMLHttpRequest();
+		request.open("GET", url, true);
+		request.onreadystatechange = function() {
+			if (request.readyState != 4) {
+				return;
+			}
+			if (request.status == 200) {
+				var builds = {};
+				var list = JSON.parse(request.responseText).builds;
+				for (var i = 0; i < list.length; i++) {
+					builds[list[i].url] = list[i];
+				}
+				update(builds);
+			}
+			setTimeout(poll, interval);
+		};
+		request.send();
+	}
+
+	setTimeout(poll, interval);
+})();
@@ -0,0 +1,42 @@
+package hudson.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the radiator's JMH benchmarks, with allocation rates reported by the
+ * GC profiler alongside the time taken. Only run by the
+ * <code>benchmark</code> profile, e.g. <code>mvn test -Dbenchmark</code>, or
+ * <code>-Dbenchmark=sort</code> to only run the benchmarks matching a
+ * pattern. Results are written to <code>target/jmh-result.json</code>.
+ */
+public class RadiatorBenchmarkRunner {
+
+	@Test
+	public void runBenchmarks() throws Exception {
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.mode(Mode.AverageTime)
+				.timeUnit(TimeUnit.MICROSECONDS)
+				.warmupIterations(3)
+				.measurementIterations(5)
+				.forks(1)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("target/jmh-result.json");
+		String pattern = System.getProperty("benchmark");
+		if (pattern != null && pattern.length() > 0 && !"true".equals(pattern)) {
+			options.include(pattern);
+		} else {
+			options.include(RadiatorEntriesBenchmark.class.getName());
+			options.include(RadiatorContentsBenchmark.class.getName());
+		}
+		new Runner(options.build()).run();
+	}
+}
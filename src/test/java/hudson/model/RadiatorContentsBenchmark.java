@@ -0,0 +1,68 @@
+package hudson.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.runner.Description;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks collecting the entries of a view of {@link SyntheticJob}s, each
+ * with 20 builds kept in memory, in a Jenkins started for the benchmark. The
+ * state of the jobs is computed once during setup, so this measures renders
+ * once the state shared by views is known, as on a running controller.
+ */
+@State(Scope.Benchmark)
+public class RadiatorContentsBenchmark {
+
+	@Param({ "100", "1000", "10000", "50000" })
+	public int jobs;
+
+	private JenkinsRule rule;
+
+	private RadiatorView view;
+
+	@Setup
+	public void setUp() throws Throwable {
+		rule = new JenkinsRule() {
+			{
+				// read by before(), which is normally run as a test rule.
+				testDescription = Description.createTestDescription(RadiatorContentsBenchmark.class, "jobs" + jobs);
+			}
+		};
+		rule.before();
+		final List<TopLevelItem> items = new ArrayList<TopLevelItem>(jobs);
+		for (int i = 0; i < jobs; i++) {
+			items.add(SyntheticJob.of(rule.jenkins, i));
+		}
+		view = new RadiatorView("benchmark") {
+			@Override
+			public List<TopLevelItem> getItems() {
+				return items;
+			}
+		};
+		view.excludeRegex = "";
+		view.getContents();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		rule.after();
+	}
+
+	@Benchmark
+	public ProjectViewEntry getContents() {
+		return view.getContents();
+	}
+
+	@Benchmark
+	public ProjectViewEntry getContentsByPrefix() {
+		return view.getContentsByPrefix();
+	}
+}
@@ -0,0 +1,80 @@
+package hudson.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks what the radiator does with its entries once they are known:
+ * sorting, partitioning and laying them out, on {@link SyntheticEntry}s so
+ * that the values of the entries cost nothing to compute.
+ */
+@State(Scope.Benchmark)
+public class RadiatorEntriesBenchmark {
+
+	@Param({ "100", "1000", "10000", "50000" })
+	public int entries;
+
+	private List<IViewEntry> shuffled;
+
+	private RadiatorSnapshot snapshot;
+
+	@Setup
+	public void setUp() {
+		shuffled = new ArrayList<IViewEntry>(entries);
+		for (int i = 0; i < entries; i++) {
+			shuffled.add(SyntheticEntry.of(i));
+		}
+		Collections.shuffle(shuffled, new Random(42));
+		ProjectViewEntry contents = new ProjectViewEntry();
+		for (IViewEntry entry : shuffled) {
+			contents.addBuild(entry);
+		}
+		snapshot = new RadiatorSnapshot(1, System.currentTimeMillis(), 30, contents.getFailingJobs(),
+				contents.getPassingJobs());
+	}
+
+	@Benchmark
+	public List<IViewEntry> sort() {
+		List<IViewEntry> sorted = new ArrayList<IViewEntry>(shuffled);
+		Collections.sort(sorted, new EntryComparator());
+		return sorted;
+	}
+
+	@Benchmark
+	public void partition(Blackhole bh) {
+		ProjectViewEntry contents = new ProjectViewEntry();
+		for (IViewEntry entry : shuffled) {
+			contents.addBuild(entry);
+		}
+		bh.consume(contents.getFailingJobs());
+		bh.consume(contents.getPassingJobs());
+		bh.consume(contents.getUnclaimedJobs());
+	}
+
+	/**
+	 * Lays tiles out in rows, which replaced <code>toRows()</code>.
+	 */
+	@Benchmark
+	public RadiatorLayout gridLayout() {
+		return RadiatorLayout.grid(snapshot, 85, 16.0 / 9);
+	}
+
+	@Benchmark
+	public RadiatorLayout uniformLayout() {
+		return RadiatorLayout.uniform(snapshot, 16.0 / 9);
+	}
+
+	@Benchmark
+	public RadiatorLayout treemapLayout() {
+		return RadiatorLayout.treemap(snapshot, 16.0 / 9);
+	}
+}
@@ -0,0 +1,68 @@
+package hudson.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RadiatorFeedTest {
+
+	@Test
+	public void splitsGroupsIntoTheirJobs() {
+		ProjectViewEntry team = new ProjectViewEntry("team");
+		team.addBuild(new SyntheticEntry("team-build", Result.SUCCESS, false, false, 10, 0));
+		team.addBuild(new SyntheticEntry("team-tests", Result.UNSTABLE, true, false, 10, 2));
+		ProjectViewEntry other = new ProjectViewEntry("other");
+		other.addBuild(new SyntheticEntry("other-new", Result.NOT_BUILT, false, false, 0, 0));
+		RadiatorSnapshot snapshot = new RadiatorSnapshot(1, 0, 30, Arrays.<IViewEntry> asList(team, other),
+				Collections.<IViewEntry> emptyList());
+
+		RadiatorFeed feed = RadiatorFeed.of(snapshot);
+
+		assertEquals("other-new\nteam-build\nteam-tests\n", feed.getNames());
+		ByteBuffer full = ByteBuffer.wrap(feed.getFull());
+		assertEquals(0, full.getShort(14));
+		assertEquals(1, full.getShort(16));
+		assertEquals(1, full.getShort(20));
+		assertEquals(3, full.getShort(22));
+		assertEquals(EntryState.NOT_BUILT, full.get(RadiatorFeed.HEADER_SIZE));
+		assertEquals(EntryState.SUCCESS, full.get(RadiatorFeed.HEADER_SIZE + 1));
+		assertEquals(EntryState.UNSTABLE | EntryState.BUILDING, full.get(RadiatorFeed.HEADER_SIZE + 2));
+	}
+
+	@Test
+	public void keepsPassingJobsLeftOutOfThePage() {
+		IViewEntry build = new SyntheticEntry("build", Result.SUCCESS, false, false, 10, 0);
+		IViewEntry tests = new SyntheticEntry("tests", Result.SUCCESS, false, false, 10, 0);
+		RadiatorFeed passing = RadiatorFeed.of(snapshot(1, Collections.<IViewEntry> emptyList(),
+				Arrays.asList(build, tests)));
+		IViewEntry broken = new SyntheticEntry("tests", Result.FAILURE, false, false, 10, 0);
+		// the page only shows the failing job, as when stable jobs are hidden.
+		RadiatorFeed failing = RadiatorFeed.of(snapshot(2, Arrays.asList(broken),
+				Collections.<IViewEntry> emptyList(), build, broken));
+
+		assertEquals(passing.getNames(), failing.getNames());
+		byte[] delta = failing.getDelta(passing);
+		assertNotNull(delta);
+		ByteBuffer buffer = ByteBuffer.wrap(delta);
+		assertEquals(1, buffer.getShort(22));
+		assertEquals(1, buffer.getShort(RadiatorFeed.HEADER_SIZE));
+		assertEquals(EntryState.BROKEN, buffer.get(RadiatorFeed.HEADER_SIZE + 2));
+	}
+
+	private static RadiatorSnapshot snapshot(long version, List<IViewEntry> failing, List<IViewEntry> passing,
+			IViewEntry... all) {
+		List<IViewEntry> shown = new ArrayList<IViewEntry>(Arrays.asList(all));
+		if (shown.isEmpty()) {
+			shown.addAll(failing);
+			shown.addAll(passing);
+		}
+		return new RadiatorSnapshot(version, 0, 30, failing, passing, shown, false);
+	}
+}
@@ -0,0 +1,202 @@
+package hudson.model;
+
+import static org.junit.Assert.assertTrue;
+
+import hudson.matrix.AxisList;
+import hudson.matrix.MatrixProject;
+import hudson.matrix.TextAxis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import jenkins.model.lazy.LazyBuildMixIn;
+import net.sf.json.JSONObject;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import com.cloudbees.hudson.plugins.folder.Folder;
+
+/**
+ * Renders a radiator of thousands of jobs with deep histories, loaded from
+ * disk as on a restarted controller, and checks that rendering stays within
+ * its budgets: wall time, builds loaded from disk and action lookups per job.
+ * Fails when a change makes the radiator load whole histories again. Takes
+ * minutes, so it is only run by the <code>scale</code> profile, e.g.
+ * <code>mvn test -Dscale</code>.
+ */
+public class RadiatorScaleRunner {
+
+	private static final int JOBS = Integer.getInteger(RadiatorScaleRunner.class.getName() + ".jobs", 2000);
+
+	private static final int BUILDS = Integer.getInteger(RadiatorScaleRunner.class.getName() + ".builds", 30);
+
+	/**
+	 * Longest failure streak of the generated jobs, after which the build
+	 * history is the last thing a render should need.
+	 */
+	private static final int FAILURE_STREAK = 15;
+
+	/**
+	 * Builds a render may load for a single job: the failure streak walked
+	 * for culprits and the successful build before it, with some room. Lower
+	 * than {@link #BUILDS}, so loading a whole history fails.
+	 */
+	private static final int MAX_LOADED_PER_JOB = FAILURE_STREAK + 5;
+
+	private static final long MAX_RENDER_MILLIS = Long.getLong(RadiatorScaleRunner.class.getName() + ".maxRenderMillis",
+			60000L);
+
+	@Rule
+	public JenkinsRule j = new JenkinsRule();
+
+	@Test
+	public void renderStaysWithinBudgets() throws Exception {
+		createJobs();
+		RadiatorView view = createView();
+
+		long start = System.currentTimeMillis();
+		render(view);
+		long millis = System.currentTimeMillis() - start;
+
+		assertTrue("rendered in " + millis + "ms", millis <= MAX_RENDER_MILLIS);
+		assertWithinBudgets(view);
+	}
+
+	@Test
+	public void finishedBuildLoadsNoHistory() throws Exception {
+		createJobs();
+		RadiatorView view = createView();
+		render(view);
+
+		// a job ending a failure streak.
+		FreeStyleProject job = j.jenkins.getItemByFullName(name(10), FreeStyleProject.class);
+		j.buildAndAssertSuccess(job);
+		Thread.sleep(RadiatorView.SNAPSHOT_PERIOD);
+		// only count what the next render loads, not what the build did.
+		long loaded = loadedBuilds(view);
+		render(view);
+
+		long reloaded = loadedBuilds(view) - loaded;
+		assertTrue("loaded " + reloaded + " more builds", reloaded <= 1);
+	}
+
+	private void assertWithinBudgets(RadiatorView view) {
+		List<Job<?, ?>> jobs = view.getShownJobs();
+		assertTrue("only " + jobs.size() + " jobs shown", jobs.size() >= JOBS);
+		for (Job<?, ?> job : jobs) {
+			int loaded = loadedBuilds(job);
+			assertTrue(job.getFullName() + " loaded " + loaded + " builds", loaded <= MAX_LOADED_PER_JOB);
+		}
+
+		JSONObject metrics = view.getMetrics().toJSON(null);
+		long renders = metrics.getLong("renders");
+		long actionLookups = metrics.getLong("actionLookups");
+		assertTrue(actionLookups + " action lookups in " + renders + " renders",
+				actionLookups <= (long) RenderStats.MAX_ACTION_LOOKUPS_PER_ENTRY * jobs.size());
+		long runs = metrics.getLong("runsDereferenced");
+		assertTrue(runs + " runs dereferenced in " + renders + " renders",
+				runs <= (long) RenderStats.MAX_RUNS_PER_ENTRY * jobs.size());
+	}
+
+	/**
+	 * Creates {@link #JOBS} jobs, a quarter of them in folders and one in 50 a
+	 * matrix job, then reloads Jenkins so that no build is in memory.
+	 */
+	private void createJobs() throws Exception {
+		List<Folder> folders = new ArrayList<Folder>();
+		for (int i = 0; i < 10; i++) {
+			folders.add(j.jenkins.createProject(Folder.class, "folder" + i));
+		}
+		for (int i = 0; i < JOBS; i++) {
+			AbstractProject<?, ?> job;
+			if (i % 50 == 1) {
+				MatrixProject matrix = j.jenkins.createProject(MatrixProject.class, name(i));
+				matrix.setAxes(new AxisList(new TextAxis("os", "linux", "windows")));
+				job = matrix;
+			} else if (i % 4 == 0) {
+				job = folders.get(i % folders.size()).createProject(FreeStyleProject.class, name(i));
+			} else {
+				job = j.createFreeStyleProject(name(i));
+			}
+			addBuilds(job, history(i));
+		}
+		j.jenkins.reload();
+	}
+
+	private static String name(int i) {
+		return "team" + (i % 20) + "-job" + i;
+	}
+
+	/**
+	 * @return results of the i-th job's builds, oldest first: mostly passing,
+	 *         with a long failure streak every 10 jobs, aborted builds every 5
+	 *         and unstable ones every 7.
+	 */
+	private static Result[] history(int i) {
+		Result[] results = new Result[BUILDS];
+		for (int n = 0; n < results.length; n++) {
+			if (i % 10 == 0 && n >= results.length - FAILURE_STREAK) {
+				results[n] = Result.FAILURE;
+			} else if (i % 5 == 0 && n >= results.length - 3) {
+				results[n] = Result.ABORTED;
+			} else if (i % 7 == 0 && n % 2 == 0) {
+				results[n] = Result.UNSTABLE;
+			} else if (n % 9 == 0) {
+				results[n] = Result.FAILURE;
+			} else {
+				results[n] = Result.SUCCESS;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Writes finished builds to disk without running them.
+	 */
+	private static void addBuilds(AbstractProject<?, ?> job, Result... results) throws IOException {
+		for (Result result : results) {
+			Run<?, ?> build = job.getLazyBuildMixIn().newBuild();
+			build.result = result;
+			build.duration = 60 * 1000L;
+			build.save();
+		}
+	}
+
+	private RadiatorView createView() throws IOException {
+		RadiatorView view = new RadiatorView("scale");
+		view.setIncludeRegex(".*");
+		view.excludeRegex = "";
+		view.showStable = true;
+		view.groupByPrefix = false;
+		j.jenkins.addView(view);
+		return view;
+	}
+
+	private void render(RadiatorView view) throws Exception {
+		JenkinsRule.WebClient wc = j.createWebClient();
+		wc.setJavaScriptEnabled(false);
+		wc.goTo(view.getUrl());
+	}
+
+	private static long loadedBuilds(RadiatorView view) {
+		long loaded = 0;
+		for (Job<?, ?> job : view.getShownJobs()) {
+			loaded += loadedBuilds(job);
+		}
+		return loaded;
+	}
+
+	/**
+	 * @return how many of the job's builds have been loaded from disk since
+	 *         Jenkins was reloaded.
+	 */
+	private static int loadedBuilds(Job<?, ?> job) {
+		if (!(job instanceof LazyBuildMixIn.LazyLoadingJob)) {
+			return 0;
+		}
+		return ((LazyBuildMixIn.LazyLoadingJob<?, ?>) job).getLazyBuildMixIn()._getRuns().getLoadedBuilds().size();
+	}
+}
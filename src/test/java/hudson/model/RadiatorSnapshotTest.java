@@ -0,0 +1,75 @@
+package hudson.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.json.JSONObject;
+
+import org.junit.Test;
+
+public class RadiatorSnapshotTest {
+
+	@Test
+	public void failingEntriesArePinnedOnEveryPage() {
+		RadiatorSnapshot snapshot = snapshot(2, 7);
+		assertEquals(3, snapshot.getPageCount(5));
+		for (int page = 1; page <= 3; page++) {
+			RadiatorSnapshot shown = snapshot.getPage(page, 5);
+			assertEquals(2, shown.getFailingJobs().size());
+			assertEquals(page < 3 ? 3 : 1, shown.getPassingJobs().size());
+			assertEquals(page, shown.getPage());
+			assertEquals(3, shown.getPages());
+		}
+	}
+
+	@Test
+	public void failingEntriesArePagedWhenTheyDontFit() {
+		RadiatorSnapshot snapshot = snapshot(7, 4);
+		assertEquals(3, snapshot.getPageCount(5));
+		assertPage(snapshot.getPage(1, 5), 5, 0);
+		assertPage(snapshot.getPage(2, 5), 2, 3);
+		assertPage(snapshot.getPage(3, 5), 0, 1);
+	}
+
+	@Test
+	public void pagesNeverHoldMoreThanMaxTiles() {
+		for (int failing = 0; failing < 12; failing++) {
+			for (int passing = 0; passing < 12; passing++) {
+				RadiatorSnapshot snapshot = snapshot(failing, passing);
+				for (int max = 1; max < 8; max++) {
+					int passingShown = 0;
+					for (int page = 1; page <= snapshot.getPageCount(max); page++) {
+						RadiatorSnapshot shown = snapshot.getPage(page, max);
+						assertTrue(shown.getFailingJobs().size() + shown.getPassingJobs().size() <= max);
+						passingShown += shown.getPassingJobs().size();
+					}
+					assertEquals(passing, passingShown);
+				}
+			}
+		}
+	}
+
+	private static void assertPage(RadiatorSnapshot page, int failing, int passing) {
+		assertEquals(failing, page.getFailingJobs().size());
+		assertEquals(passing, page.getPassingJobs().size());
+	}
+
+	private static RadiatorSnapshot snapshot(int failing, int passing) {
+		return new RadiatorSnapshot(1, 0, 30, entries("failing", failing, true), entries("passing", passing, false));
+	}
+
+	private static List<IViewEntry> entries(String prefix, int count, boolean broken) {
+		List<IViewEntry> entries = new ArrayList<IViewEntry>();
+		for (int i = 0; i < count; i++) {
+			JSONObject json = new JSONObject();
+			json.put("name", prefix + i);
+			json.put("broken", broken);
+			json.put("stable", !broken);
+			entries.add(new StoredViewEntry(json));
+		}
+		return entries;
+	}
+}
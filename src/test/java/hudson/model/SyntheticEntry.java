@@ -0,0 +1,179 @@
+package hudson.model;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * An {@link IViewEntry} with fixed values, for benchmarking what is done with
+ * entries independently of how their values are computed.
+ */
+final class SyntheticEntry implements IViewEntry {
+
+	private final String name;
+
+	private final Result result;
+
+	private final boolean building;
+
+	private final boolean claimed;
+
+	private final int testCount;
+
+	private final int failCount;
+
+	SyntheticEntry(String name, Result result, boolean building, boolean claimed, int testCount, int failCount) {
+		this.name = name;
+		this.result = result;
+		this.building = building;
+		this.claimed = claimed;
+		this.testCount = testCount;
+		this.failCount = failCount;
+	}
+
+	/**
+	 * @return the i-th entry of a view, mostly passing, with a failing entry
+	 *         every 10 and an unstable one every 7, a third of which are
+	 *         claimed.
+	 */
+	static SyntheticEntry of(int i) {
+		Result result = Result.SUCCESS;
+		if (i % 10 == 0) {
+			result = Result.FAILURE;
+		} else if (i % 7 == 0) {
+			result = Result.UNSTABLE;
+		} else if (i % 97 == 0) {
+			result = Result.NOT_BUILT;
+		}
+		String prefix = "team" + (i % 50);
+		return new SyntheticEntry(prefix + "-job" + i, result, i % 13 == 0, i % 3 == 0, 100 + i % 400,
+				result == Result.UNSTABLE ? 1 + i % 5 : 0);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Boolean getQueued() {
+		return false;
+	}
+
+	public String getStatus() {
+		if (isNotBuilt()) {
+			return "never built";
+		}
+		if (getStable()) {
+			return "successful";
+		}
+		if (claimed) {
+			return "claimed";
+		}
+		return getBroken() ? "failing" : "unstable";
+	}
+
+	public String getBackgroundColor() {
+		return ViewEntryColors.DEFAULT.getBackground(EntryState.status(EntryState.of(result, building)));
+	}
+
+	public String getColor() {
+		return ViewEntryColors.DEFAULT.getForeground(EntryState.status(EntryState.of(result, building)));
+	}
+
+	public Boolean getBroken() {
+		return result == Result.FAILURE;
+	}
+
+	public Boolean getBuilding() {
+		return building;
+	}
+
+	public String getUrl() {
+		return "job/" + name + "/";
+	}
+
+	public int getTestCount() {
+		return testCount;
+	}
+
+	public int getFailCount() {
+		return failCount;
+	}
+
+	public int getSuccessCount() {
+		return testCount - failCount;
+	}
+
+	public String getDiff() {
+		return "";
+	}
+
+	public String getCulprit() {
+		return " - ";
+	}
+
+	public Collection<String> getCulprits() {
+		return Collections.emptyList();
+	}
+
+	public String getDiffColor() {
+		return "#FFFFFF";
+	}
+
+	public String getSuccessPercentage() {
+		return "";
+	}
+
+	public String getLastCompletedBuild() {
+		return null;
+	}
+
+	public String getLastStableBuild() {
+		return null;
+	}
+
+	public boolean getStable() {
+		return result == Result.SUCCESS;
+	}
+
+	public String getClaim() {
+		return claimed ? "(someone)." : JobState.NOT_CLAIMED;
+	}
+
+	public String getUnclaimedMatrixBuilds() {
+		return "";
+	}
+
+	public Result getLastFinishedResult() {
+		return result;
+	}
+
+	public boolean hasChildren() {
+		return false;
+	}
+
+	public boolean isClaimed() {
+		return claimed;
+	}
+
+	public boolean isCompletelyClaimed() {
+		return claimed;
+	}
+
+	public boolean isNotBuilt() {
+		return result == Result.NOT_BUILT;
+	}
+
+	/**
+	 * @return null, the entry being local.
+	 */
+	public String getSource() {
+		return null;
+	}
+
+	public boolean isSourceStale() {
+		return false;
+	}
+
+	public boolean isFolder() {
+		return false;
+	}
+}
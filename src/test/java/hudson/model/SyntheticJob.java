@@ -0,0 +1,146 @@
+package hudson.model;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A job whose builds are only kept in memory, for benchmarking the radiator
+ * against thousands of jobs without loading anything from disk.
+ */
+final class SyntheticJob extends Job<SyntheticJob, SyntheticJob.SyntheticRun> implements TopLevelItem {
+
+	/**
+	 * Builds by number, latest first, as {@link Job#_getRuns()} returns them.
+	 */
+	private final TreeMap<Integer, SyntheticRun> runs = new TreeMap<Integer, SyntheticRun>(
+			Collections.reverseOrder());
+
+	/**
+	 * @param parent
+	 *            the group holding the job, which is only used for its name.
+	 * @param name
+	 *            the job's name.
+	 * @param results
+	 *            results of the job's builds, oldest first.
+	 */
+	SyntheticJob(ItemGroup<?> parent, String name, Result... results) {
+		super(parent, name);
+		long timestamp = System.currentTimeMillis() - results.length * 60 * 60 * 1000L;
+		for (int i = 0; i < results.length; i++) {
+			runs.put(i + 1, new SyntheticRun(this, i + 1, timestamp, results[i]));
+			timestamp += 60 * 60 * 1000L;
+		}
+	}
+
+	/**
+	 * @return the i-th job of a view, with a history of 20 builds: mostly
+	 *         passing, with a failure streak every 10 jobs, an unstable build
+	 *         every 7 and an aborted build every 5.
+	 */
+	static SyntheticJob of(ItemGroup<?> parent, int i) {
+		Result[] results = new Result[20];
+		for (int n = 0; n < results.length; n++) {
+			if (i % 10 == 0 && n >= 12) {
+				results[n] = Result.FAILURE;
+			} else if (i % 5 == 0 && n == results.length - 1) {
+				results[n] = Result.ABORTED;
+			} else if (i % 7 == 0 && n % 2 == 0) {
+				results[n] = Result.UNSTABLE;
+			} else {
+				results[n] = Result.SUCCESS;
+			}
+		}
+		return new SyntheticJob(parent, "team" + (i % 50) + "-job" + i, results);
+	}
+
+	@Override
+	public boolean isBuildable() {
+		return false;
+	}
+
+	@Override
+	protected SortedMap<Integer, ? extends SyntheticRun> _getRuns() {
+		return runs;
+	}
+
+	@Override
+	protected void removeRun(SyntheticRun run) {
+		runs.remove(run.getNumber());
+	}
+
+	@Override
+	public SyntheticRun getLastSuccessfulBuild() {
+		for (SyntheticRun run : runs.values()) {
+			if (run.getResult().isBetterOrEqualTo(Result.UNSTABLE)) {
+				return run;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public SyntheticRun getLastStableBuild() {
+		for (SyntheticRun run : runs.values()) {
+			if (run.getResult() == Result.SUCCESS) {
+				return run;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public SyntheticRun getLastCompletedBuild() {
+		return getLastBuild();
+	}
+
+	/**
+	 * @return null, as the job can't be configured.
+	 */
+	public TopLevelItemDescriptor getDescriptor() {
+		return null;
+	}
+
+	/**
+	 * A finished build of a {@link SyntheticJob}.
+	 */
+	static final class SyntheticRun extends Run<SyntheticJob, SyntheticRun> {
+
+		SyntheticRun(SyntheticJob job, int number, long timestamp, Result result) {
+			super(job, timestamp);
+			this.number = number;
+			this.result = result;
+		}
+
+		@Override
+		public SyntheticRun getPreviousBuild() {
+			Integer previous = getParent().runs.higherKey(getNumber());
+			return previous == null ? null : getParent().runs.get(previous);
+		}
+
+		@Override
+		public SyntheticRun getPreviousBuildInProgress() {
+			return null;
+		}
+
+		@Override
+		public boolean hasntStartedYet() {
+			return false;
+		}
+
+		@Override
+		public boolean isBuilding() {
+			return false;
+		}
+
+		@Override
+		public boolean isLogUpdated() {
+			return false;
+		}
+
+		@Override
+		public long getDuration() {
+			return 5 * 60 * 1000L;
+		}
+	}
+}